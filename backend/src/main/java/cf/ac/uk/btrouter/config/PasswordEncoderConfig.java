@@ -0,0 +1,74 @@
+package cf.ac.uk.btrouter.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+@Configuration
+public class PasswordEncoderConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordEncoderConfig.class);
+
+    // Never go below the BCrypt default, whatever the latency budget says
+    public static final int MIN_STRENGTH = 10;
+    public static final int MAX_STRENGTH = 16;
+
+    // Fixed BCrypt strength; 0 means calibrate against the target hash time at startup
+    @Value("${security.password.bcrypt-strength:0}")
+    private int bcryptStrength;
+
+    @Value("${security.password.target-hash-ms:250}")
+    private long targetHashMillis;
+
+    @Value("${security.password.hash-threads:0}")
+    private int hashThreads;
+
+    @Value("${security.password.hash-queue:64}")
+    private int hashQueue;
+
+    // Configure password encoder for secure password storage. Hashes are stored as {bcrypt}...; legacy
+    // unprefixed or weaker hashes still match and are rewritten on the next successful login.
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        int strength = bcryptStrength > 0 ? bcryptStrength : calibrateBCryptStrength(targetHashMillis);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        logger.info("Password hashing: bcrypt strength {}, {} threads, queue {}", strength, threads, hashQueue);
+        return new BoundedPasswordEncoder(delegating, threads, hashQueue, meterRegistry);
+    }
+
+    // Time one hash at the minimum strength and step up while the doubled cost still fits the budget
+    public static int calibrateBCryptStrength(long targetMillis) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_STRENGTH);
+        probe.encode("calibration"); // warm up
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int strength = MIN_STRENGTH;
+        double estimateMillis = best / 1_000_000.0;
+        while (strength < MAX_STRENGTH && estimateMillis * 2 <= targetMillis) {
+            strength++;
+            estimateMillis *= 2;
+        }
+        logger.info("Calibrated bcrypt strength {} (~{} ms per hash, target {} ms)",
+                strength, Math.round(estimateMillis), targetMillis);
+        return strength;
+    }
+}
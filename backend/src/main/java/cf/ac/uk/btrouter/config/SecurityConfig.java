@@ -1,6 +1,8 @@
 package cf.ac.uk.btrouter.config;
 
 import cf.ac.uk.btrouter.service.CustomUserDetailsService;
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,24 +22,34 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.filter.OncePerRequestFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,22 +65,117 @@ public class SecurityConfig {
     @Value("${jwt.expiration}")
     private Long jwtExpiration;
 
+    // Upper bound on the number of verified tokens kept in memory
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    // Build the principal straight from verified claims instead of loading the user per request
+    @Value("${jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
+
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // Parser keyed once with the signing secret and reused for every request
+    private volatile JwtParser jwtParser;
+
+    // Verified claims keyed by token digest, each entry expiring with its token
+    private volatile Cache<String, Claims> verifiedClaims;
+
     public String extractEmail(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret.getBytes())
-                .parseClaimsJws(token)
-                .getBody();
+        return parseClaims(token).getSubject();
+    }
+
+    // Verify a token once and serve repeat presentations from the claims cache
+    public Claims parseClaims(String token) {
+        Cache<String, Claims> cache = verifiedClaims();
+        String key = digest(token);
+
+        Claims claims = cache.getIfPresent(key);
+        if (claims == null) {
+            claims = jwtParser().parseClaimsJws(token).getBody();
+            cache.put(key, claims);
+        }
+        return claims;
+    }
+
+    private JwtParser jwtParser() {
+        JwtParser parser = jwtParser;
+        if (parser == null) {
+            parser = Jwts.parserBuilder()
+                    .setSigningKey(Decoders.BASE64.decode(jwtSecret))
+                    .build();
+            jwtParser = parser;
+        }
+        return parser;
+    }
+
+    private Cache<String, Claims> verifiedClaims() {
+        Cache<String, Claims> cache = verifiedClaims;
+        if (cache == null) {
+            synchronized (this) {
+                cache = verifiedClaims;
+                if (cache == null) {
+                    cache = Caffeine.newBuilder()
+                            .maximumSize(claimsCacheMaxSize)
+                            .expireAfter(new TokenExpiry(jwtExpiration))
+                            .build();
+                    verifiedClaims = cache;
+                }
+            }
+        }
+        return cache;
+    }
 
-        return claims.getSubject();
+    // Cache key for a token, so raw bearer tokens are never held in memory
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Expire cached claims at the token's own exp claim
+    private static final class TokenExpiry implements Expiry<String, Claims> {
+        private final long fallbackMillis;
+
+        private TokenExpiry(long fallbackMillis) {
+            this.fallbackMillis = fallbackMillis;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            long remainingMillis = expiration != null
+                    ? expiration.getTime() - System.currentTimeMillis()
+                    : fallbackMillis;
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
     // Create and configure JWT authentication filter
     @Bean
     public JwtAuthFilter jwtAuthFilter() {
-        return new JwtAuthFilter(customUserDetailsService, jwtSecret);
+        return new JwtAuthFilter(customUserDetailsService);
     }
 
     // Configure the authentication provider with custom user details service
@@ -76,7 +183,9 @@ public class SecurityConfig {
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(customUserDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Rehash stale hashes with the current encoder after a successful login
+        authProvider.setUserDetailsPasswordService(customUserDetailsService);
         return authProvider;
     }
 
@@ -86,24 +195,25 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
-    // Configure password encoder for secure password storage
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     // Configure security filter chain with JWT and role-based authentication
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // Async re-dispatches (event streams) were authorised on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/error").permitAll()
+                        // WebSocket handshake; STOMP CONNECT carries the token (see WebSocketConfig)
+                        .requestMatchers("/ws/**").permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
                         .requestMatchers("/api/news/**").permitAll()
                         .requestMatchers("/api/orders/**").permitAll()
                         .requestMatchers("/api/spreadsheet/download").permitAll()
+                        .requestMatchers("/api/spreadsheet/download/customers").hasAnyRole("ADMIN", "SUPPORT_AGENT")
+                        .requestMatchers("/api/spreadsheet/jobs/**").hasAnyRole("ADMIN", "SUPPORT_AGENT")
+                        .requestMatchers("/api/spreadsheet/orders.csv", "/api/spreadsheet/orders.ndjson").hasAnyRole("ADMIN", "SUPPORT_AGENT")
                         .requestMatchers("/api/orders/**").hasAnyRole("ADMIN", "SUPPORT_AGENT", "USER")
                         .requestMatchers("/api/admin/users/**").permitAll()
                         .requestMatchers("/api/routers/**").permitAll()
@@ -143,11 +253,9 @@ public class SecurityConfig {
 
     public class JwtAuthFilter extends OncePerRequestFilter {
         private final UserDetailsService userDetailsService;
-        private final String jwtSecret;
 
-        public JwtAuthFilter(UserDetailsService userDetailsService, String jwtSecret) {
+        public JwtAuthFilter(UserDetailsService userDetailsService) {
             this.userDetailsService = userDetailsService;
-            this.jwtSecret = jwtSecret;
         }
 
         private static final Logger logger = LoggerFactory.getLogger(JwtAuthFilter.class);
@@ -197,64 +305,51 @@ public class SecurityConfig {
             String jwt = authHeader.substring(7);
             logger.debug("JWT received: {}", jwt);
 
+            // Single verification per request, served from the claims cache when seen before
+            Claims claims;
+            try {
+                claims = parseClaims(jwt);
+            } catch (JwtException | IllegalArgumentException e) {
+                logger.warn("Invalid or expired token: {}", e.getMessage());
+                chain.doFilter(request, response);
+                return;
+            }
 
-            String username = extractUsername(jwt);
-            String role = extractRole(jwt);
+            String username = claims.getSubject();
+            String role = claims.get("role", String.class);
+
+            // Role changes, password changes and deletions revoke tokens issued before them
+            if (username != null && tokenRevocationService.isRevoked(username, claims.get(TokenRevocationService.EPOCH_CLAIM, Long.class))) {
+                logger.warn("Revoked token presented for: {}", username);
+                chain.doFilter(request, response);
+                return;
+            }
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                if (validateToken(jwt)) {
-                    logger.info("Token is valid for: {} with role: {}", username, role);
-                    List<SimpleGrantedAuthority> authorities =
-                            Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
-
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, authorities);
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                } else {
-                    logger.warn("Invalid or expired token for: {}", username);
-                }
+                logger.info("Token is valid for: {} with role: {}", username, role);
+                List<SimpleGrantedAuthority> authorities =
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
+
+                UserDetails userDetails = statelessPrincipal
+                        ? new org.springframework.security.core.userdetails.User(username, "", authorities)
+                        : userDetailsService.loadUserByUsername(username);
+
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, authorities);
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
 
             chain.doFilter(request, response);
         }
-
-        // Extract username from JWT token
-        private String extractUsername(String token) {
-            return Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .getSubject();
-        }
-
-        // Extract role from JWT token
-        private String extractRole(String token) {
-            return Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .get("role", String.class);
-        }
-
-        // Validate JWT token
-        private boolean validateToken(String token) {
-            try {
-                Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token);
-                return true;
-            } catch (Exception e) {
-                return false;
-            }
-        }
     }
 
-    // Generate new JWT token with username and role
+    // Generate new JWT token with username, role and the user's current revocation epoch
     public String generateToken(String username, String role) {
         return Jwts.builder()
                 .setSubject(username)
                 .claim("role", role)
+                .claim(TokenRevocationService.EPOCH_CLAIM, tokenRevocationService.currentEpoch(username))
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
                 .signWith(SignatureAlgorithm.HS256, jwtSecret)
@@ -263,19 +358,11 @@ public class SecurityConfig {
 
     // Extract username from JWT token
     public String extractUsername(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return parseClaims(token).getSubject();
     }
 
     // Extract role from JWT token
     public String extractRole(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.get("role", String.class);
+        return parseClaims(token).get("role", String.class);
     }
 }
\ No newline at end of file
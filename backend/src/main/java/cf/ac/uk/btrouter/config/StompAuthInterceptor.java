@@ -0,0 +1,102 @@
+package cf.ac.uk.btrouter.config;
+
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Authenticates STOMP CONNECT frames and authorises SUBSCRIBE and SEND, denying by default.
+// The simple broker matches subscriptions as Ant patterns (/topic/**) and the /app mappings ignore
+// empty segments (/app//admin/orders), so only plain destinations are checked by prefix; anything
+// else needs an admin role.
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private static final Set<String> ADMIN_ROLES = Set.of("ROLE_ADMIN", "ROLE_SUPPORT_AGENT");
+
+    // Non-empty segments of letters, digits, '.', '_' and '-', none starting with '.'
+    private static final Pattern PLAIN_DESTINATION = Pattern.compile("(/[A-Za-z0-9_-][A-Za-z0-9._-]*)+");
+
+    private final SecurityConfig securityConfig;
+    private final TokenRevocationService tokenRevocationService;
+
+    public StompAuthInterceptor(SecurityConfig securityConfig, TokenRevocationService tokenRevocationService) {
+        this.securityConfig = securityConfig;
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        StompCommand command = accessor.getCommand();
+        if (StompCommand.CONNECT.equals(command) || StompCommand.STOMP.equals(command)) {
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader("Authorization")));
+        } else if (StompCommand.SUBSCRIBE.equals(command) || StompCommand.SEND.equals(command)) {
+            authorise(command, accessor.getDestination(), accessor.getUser());
+        }
+        return message;
+    }
+
+    private void authorise(StompCommand command, String destination, Principal user) {
+        if (!(user instanceof Authentication)) {
+            throw new AccessDeniedException("Not authenticated");
+        }
+        if (destination == null) {
+            throw new AccessDeniedException("Destination required");
+        }
+        // Only the server publishes to /topic; a client message there would reach every subscriber
+        if (StompCommand.SEND.equals(command) && !destination.startsWith("/app/")) {
+            throw new AccessDeniedException("Messages may only be sent to /app destinations");
+        }
+        boolean plain = PLAIN_DESTINATION.matcher(destination).matches();
+        if ((!plain || isAdminDestination(destination)) && !isAdmin(user)) {
+            throw new AccessDeniedException("Admin or support agent role required");
+        }
+    }
+
+    // Same checks as JwtAuthFilter: valid signature and expiry, not revoked
+    private Authentication authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new AccessDeniedException("Missing bearer token");
+        }
+        Claims claims;
+        try {
+            claims = securityConfig.parseClaims(authHeader.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new AccessDeniedException("Invalid or expired token");
+        }
+        String username = claims.getSubject();
+        if (username == null || tokenRevocationService.isRevoked(username,
+                claims.get(TokenRevocationService.EPOCH_CLAIM, Long.class))) {
+            throw new AccessDeniedException("Token has been revoked");
+        }
+        String role = claims.get("role", String.class);
+        return new UsernamePasswordAuthenticationToken(username, null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+
+    private static boolean isAdminDestination(String destination) {
+        return destination.startsWith("/topic/admin/") || destination.startsWith("/app/admin/");
+    }
+
+    private static boolean isAdmin(Principal user) {
+        return user instanceof Authentication authentication
+                && authentication.getAuthorities().stream().anyMatch(a -> ADMIN_ROLES.contains(a.getAuthority()));
+    }
+}
@@ -0,0 +1,40 @@
+package cf.ac.uk.btrouter.config;
+
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+// STOMP over WebSocket at /ws for live admin views. Browsers cannot set headers on the WebSocket
+// handshake, so the JWT is sent in the STOMP CONNECT frame and checked by StompAuthInterceptor
+// instead of by JwtAuthFilter.
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Autowired
+    private SecurityConfig securityConfig;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOrigins("http://localhost:3000");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new StompAuthInterceptor(securityConfig, tokenRevocationService));
+    }
+}
@@ -0,0 +1,23 @@
+package cf.ac.uk.btrouter.controller;
+
+import cf.ac.uk.btrouter.dto.OrderQueueSnapshot;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+// Admin queue over STOMP: subscribe to /topic/admin/orders for changes first, then to
+// /app/admin/orders for the snapshot, and apply buffered changes with a higher sequence on top
+@Controller
+public class AdminOrderFeedController {
+
+    private final AdminOrderFeed adminOrderFeed;
+
+    public AdminOrderFeedController(AdminOrderFeed adminOrderFeed) {
+        this.adminOrderFeed = adminOrderFeed;
+    }
+
+    @SubscribeMapping("/admin/orders")
+    public OrderQueueSnapshot snapshot() {
+        return adminOrderFeed.snapshot();
+    }
+}
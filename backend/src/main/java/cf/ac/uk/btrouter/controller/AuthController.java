@@ -7,19 +7,17 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
 import cf.ac.uk.btrouter.model.User;
+import cf.ac.uk.btrouter.service.LoginRateLimiter;
 import cf.ac.uk.btrouter.service.UserService;
+import cf.ac.uk.btrouter.config.BoundedPasswordEncoder;
 import cf.ac.uk.btrouter.config.SecurityConfig;
 import cf.ac.uk.btrouter.dto.LoginDTO;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import io.github.bucket4j.Bucket;
 import io.github.bucket4j.ConsumptionProbe;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Refill;
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -29,38 +27,28 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
     private final SecurityConfig securityConfig;
+    private final LoginRateLimiter loginRateLimiter;
 
     private static final Logger logger = LoggerFactory.getLogger(UserSettingsController.class);
 
-    // Rate limiting configuration
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
-    private static final int MAX_ATTEMPTS = 5;
-    private static final int REFILL_TIME_MINUTES = 15;
-
     // Constructor injection of required services
     public AuthController(AuthenticationManager authenticationManager,
                           UserService userService,
-                          SecurityConfig securityConfig) {
+                          SecurityConfig securityConfig,
+                          LoginRateLimiter loginRateLimiter) {
         this.authenticationManager = authenticationManager;
         this.userService = userService;
         this.securityConfig = securityConfig;
-    }
-
-    private Bucket getBucket(String key) {
-        return buckets.computeIfAbsent(key, k -> {
-            Bandwidth limit = Bandwidth.classic(MAX_ATTEMPTS, 
-                Refill.intervally(MAX_ATTEMPTS, Duration.ofMinutes(REFILL_TIME_MINUTES)));
-            return Bucket.builder().addLimit(limit).build();
-        });
+        this.loginRateLimiter = loginRateLimiter;
     }
 
     // Handle user login and return JWT token with user details
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginDTO loginRequest) {
-        String ipAddress = loginRequest.getEmail(); // Using email as key for simplicity
-        Bucket bucket = getBucket(ipAddress);
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
-        
+    public ResponseEntity<?> login(@RequestBody LoginDTO loginRequest, HttpServletRequest request) {
+        // Rate limited per client IP and per account. Behind a trusted proxy the remote address is
+        // the forwarded client (see server.tomcat.remoteip), otherwise the peer itself
+        ConsumptionProbe probe = loginRateLimiter.tryConsume(request.getRemoteAddr(), loginRequest.getEmail());
+
         if (!probe.isConsumed()) {
             long waitForRefill = probe.getNanosToWaitForRefill() / 1_000_000_000;
             logger.warn("Rate limit exceeded for user: {}. Try again in {} seconds", loginRequest.getEmail(), waitForRefill);
@@ -106,6 +94,11 @@ public class AuthController {
 
             logger.info("Login successful for user: {}", loginRequest.getEmail());
             return ResponseEntity.ok(response);
+        } catch (BoundedPasswordEncoder.HashingBusyException e) {
+            logger.warn("Password hashing saturated, rejecting login for user: {}", loginRequest.getEmail());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body(Map.of("message", "Login is busy. Please try again shortly"));
         } catch (AuthenticationException e) {
             logger.warn("Invalid login credentials for user: {}", loginRequest.getEmail());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid credentials"));
@@ -1,68 +1,39 @@
 package cf.ac.uk.btrouter.controller;
 
-import cf.ac.uk.btrouter.model.Order;
-import cf.ac.uk.btrouter.model.User;
-import cf.ac.uk.btrouter.service.OrderService;
-import cf.ac.uk.btrouter.service.UserService;
-import jakarta.servlet.http.HttpServletResponse;
+import cf.ac.uk.btrouter.service.DataExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/user")
 @CrossOrigin(origins = "*")
 public class DataExportController {
 
-    private final UserService userService;
-    private final OrderService orderService;
+    private final DataExportService dataExportService;
 
-    public DataExportController(UserService userService, OrderService orderService) {
-        this.userService = userService;
-        this.orderService = orderService;
+    public DataExportController(DataExportService dataExportService) {
+        this.dataExportService = dataExportService;
     }
+
+    // The signed-in user's profile and order history as CSV (default) or JSON, gzipped when accepted
     @GetMapping("/export")
-    public void exportDataAsCSV(HttpServletResponse response, Authentication authentication) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportData(@RequestParam(defaultValue = "csv") String format,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                            Authentication authentication) {
         String email = authentication.getName();
-        User user = userService.findByEmail(email);
-        List<Order> orders = orderService.getOrdersByEmail(email);
-
-        response.setContentType("text/csv");
-        response.setHeader("Content-Disposition", "attachment; filename=\"bt-data-export.csv\"");
-
-        try (PrintWriter writer = response.getWriter()) {
-            writer.println("=== USER DETAILS ===");
-            writer.println("Email,First Name,Last Name,Phone Number,Business Type,VAT Number,Billing Address,2FA,Order Updates,Billing Notifs,Marketing Emails");
-
-            writer.printf("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",%b,%b,%b,%b\n",
-                    user.getEmail(), user.getFirstName(), user.getLastName(), user.getPhoneNumber(),
-                    user.getBusinessType(), user.getVatNumber(), user.getBillingAddress(),
-                    user.isTwoFactorAuth(), user.isOrderUpdates(), user.isBillingNotifications(), user.isMarketingEmails());
-
-            writer.println();
-            writer.println("=== ORDER HISTORY ===");
-            writer.println("Order Date,Router Type,Customer Type,Num Routers,Site Name,Address,Postcode,Primary Email,Secondary Email,Phone,Contact,Priority");
-
-            for (Order order : orders) {
-                writer.printf("\"%s\",\"%s\",\"%s\",%d,\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
-                    order.getReferenceNumber(),
-                    order.getRouterModel(),
-                    order.getCustomer().getCustomerName(),
-                    order.getNumberOfRouters(),
-                    order.getSiteName(),
-                    order.getAddress(),
-                    order.getPostcode(),
-                    order.getEmail(),
-                    order.getSiteSecondaryEmail(),
-                    order.getSitePhoneNumber(),
-                    order.getSiteContactName(),
-                    order.getPriorityLevel(),
-                    order.getOrderDate());
-            }
+        if (format.equalsIgnoreCase("json")) {
+            return StreamingDownloads.of(acceptEncoding, "bt-data-export.json", MediaType.APPLICATION_JSON,
+                    out -> dataExportService.exportUserData(email, out, DataExportService.Format.JSON));
+        }
+        if (!format.equalsIgnoreCase("csv")) {
+            return ResponseEntity.badRequest().build();
         }
+        return StreamingDownloads.of(acceptEncoding, "bt-data-export.csv", MediaType.parseMediaType("text/csv;charset=UTF-8"),
+                out -> dataExportService.exportUserData(email, out, DataExportService.Format.CSV));
     }
 
 }
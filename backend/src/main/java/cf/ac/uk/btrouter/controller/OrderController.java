@@ -1,13 +1,21 @@
 package cf.ac.uk.btrouter.controller;
 
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.BatchOrderResult;
+import cf.ac.uk.btrouter.dto.CursorPage;
+import cf.ac.uk.btrouter.dto.OrderFilter;
 import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.dto.StageDurationStats;
 import cf.ac.uk.btrouter.model.Order;
-import cf.ac.uk.btrouter.model.OrderTracking;
-import cf.ac.uk.btrouter.repository.OrderTrackingRepository;
 import cf.ac.uk.btrouter.service.OrderService;
-import cf.ac.uk.btrouter.service.NewsService;
+import cf.ac.uk.btrouter.service.OrderStatusHistoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+import java.time.LocalDate;
 import java.util.*;
 
 @RestController
@@ -26,15 +35,20 @@ public class OrderController {
     private OrderService orderService;
 
     @Autowired
-    private NewsService newsService;
-
-    @Autowired
-    private OrderTrackingRepository orderTrackingRepository;
+    private OrderStatusHistoryService orderStatusHistoryService;
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Value("${orders.batch.max-size:500}")
+    private int maxBatchSize;
+
+    // withTracking=true also creates the tracking row in the same transaction and returns both references
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestBody OrderRequest orderRequest, Authentication authentication) {
+    public ResponseEntity<?> createOrder(@RequestBody OrderRequest orderRequest,
+                                         @RequestParam(defaultValue = "false") boolean withTracking,
+                                         Authentication authentication) {
         String email = authentication.getName();
         orderRequest.setSitePrimaryEmail(email);
 
@@ -63,6 +77,19 @@ public class OrderController {
 //        System.out.println("Inside Connections: " + orderRequest.getInsideConnections());
 
         try {
+            if (withTracking) {
+                OrderWithTracking created = orderService.saveOrderWithTracking(orderRequest);
+                String trackingReference = created.getTracking().getReferenceNumber();
+                logger.info("Order and tracking saved for user: {}. Reference: {}. Execution time: {} ms",
+                        email, trackingReference, System.currentTimeMillis() - startTime);
+
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("message", "Order placed successfully");
+                response.put("order", created.getOrder());
+                response.put("trackingReference", trackingReference);
+                return ResponseEntity.ok(response);
+            }
+
             Order savedOrder = orderService.saveOrder(orderRequest);
             long duration = System.currentTimeMillis() - startTime;
             logger.info("Order successfully saved for user: {}. Reference: {}. Execution time: {} ms",
@@ -74,12 +101,47 @@ public class OrderController {
         }
     }
 
+    // 🟢 Create many orders in one request (integrations); each item gets its own result.
+    // withTracking=true also creates each order's tracking row, as on the single-order endpoint
+    @PostMapping("/batch")
+    public ResponseEntity<?> createOrders(@RequestBody List<OrderRequest> orderRequests,
+                                          @RequestParam(defaultValue = "false") boolean withTracking,
+                                          Authentication authentication) {
+        String email = authentication.getName();
+        if (orderRequests == null || orderRequests.isEmpty()) {
+            return ResponseEntity.badRequest().body("Error: no orders supplied");
+        }
+        if (orderRequests.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().body("Error: at most " + maxBatchSize + " orders per batch");
+        }
+        logger.info("Received batch of {} orders from user: {}", orderRequests.size(), email);
+        orderRequests.forEach(orderRequest -> orderRequest.setSitePrimaryEmail(email));
+
+        long startTime = System.currentTimeMillis();
+        try {
+            List<BatchOrderResult> results = orderService.saveOrders(orderRequests, withTracking);
+            long created = results.stream().filter(BatchOrderResult::isSuccess).count();
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("Batch for user {}: {} created, {} rejected. Execution time: {} ms",
+                    email, created, results.size() - created, duration);
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("created", created);
+            response.put("failed", results.size() - created);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error while creating order batch for user {}: {}", email, e.getMessage(), e);
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // 🔵 Get all orders with tracking info (admin)
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getAllRequests() {
+    public ResponseEntity<List<AdminOrderDTO>> getAllRequests() {
         logger.info("Admin requested all router orders.");
         long startTime = System.currentTimeMillis();
-        List<Order> orders = orderService.getAllRequests();
+        List<AdminOrderDTO> orders = orderService.getAllRequests();
         long duration = System.currentTimeMillis() - startTime;
         logger.debug("Retrieved {} total orders. Execution time: {} ms", orders.size(), duration);
 
@@ -87,15 +149,73 @@ public class OrderController {
             logger.warn("No router orders found in the system");
         }
 
-        return ResponseEntity.ok(mapOrdersWithTracking(orders));
+        return ResponseEntity.ok(orders);
+    }
+
+    // 🔵 Keyset-paginated, filterable order listing (admin). Pass nextCursor back as cursor for the next page.
+    @GetMapping("/page")
+    public ResponseEntity<?> getOrderPage(@RequestParam(required = false) String status,
+                                          @RequestParam(required = false) String priority,
+                                          @RequestParam(required = false) Long customerId,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                          @RequestParam(defaultValue = "desc") String sort,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (!sort.equalsIgnoreCase("asc") && !sort.equalsIgnoreCase("desc")) {
+            return ResponseEntity.badRequest().body("Sort must be asc or desc");
+        }
+
+        OrderFilter filter = OrderFilter.builder()
+                .status(status)
+                .priorityLevel(priority)
+                .customerId(customerId)
+                .from(from != null ? from.atStartOfDay() : null)
+                .to(to != null ? to.plusDays(1).atStartOfDay() : null)
+                .build();
+        logger.info("Admin requested order page. Filter: {}, sort: {}, size: {}", filter, sort, size);
+
+        long startTime = System.currentTimeMillis();
+        CursorPage<AdminOrderDTO> page;
+        try {
+            page = orderService.getOrderPage(filter, cursor, sort.equalsIgnoreCase("asc"), size);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected order page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        logger.debug("Retrieved {} orders for page. Execution time: {} ms", page.getItems().size(), duration);
+
+        return ResponseEntity.ok(page);
+    }
+
+    // 🔵 Time-in-stage percentiles from the status history (admin); defaults to the last 30 days
+    @GetMapping("/stage-durations")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPPORT_AGENT')")
+    public ResponseEntity<?> getStageDurations(@RequestParam String status,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        try {
+            StageDurationStats stats = orderStatusHistoryService.getStageDurations(status,
+                    start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected stage duration request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     // 🟡 Get only pending requests (admin)
     @GetMapping("/pending")
-    public ResponseEntity<List<Map<String, Object>>> getPendingRequests() {
+    public ResponseEntity<List<AdminOrderDTO>> getPendingRequests() {
         logger.info("Admin requested pending orders only.");
         long startTime = System.currentTimeMillis();
-        List<Order> orders = orderService.getPendingRequests();
+        List<AdminOrderDTO> orders = orderService.getPendingRequests();
         long duration = System.currentTimeMillis() - startTime;
         logger.debug("Retrieved {} pending orders. Execution time: {} ms", orders.size(), duration);
 
@@ -103,7 +223,7 @@ public class OrderController {
             logger.warn("No pending router orders available");
         }
 
-        return ResponseEntity.ok(mapOrdersWithTracking(orders));
+        return ResponseEntity.ok(orders);
     }
 
     // 🔴 Update order status and push news announcement (admin)
@@ -117,14 +237,9 @@ public class OrderController {
         try {
             Order updatedOrder = orderService.updateOrderStatus(id, newStatus);
             if (updatedOrder != null) {
-                String ref = updatedOrder.getReferenceNumber();
-                logger.info("Order status updated. Reference: {}, New Status: {}", ref, newStatus);
-
-                newsService.createPost(
-                        "Router Request Status Updated",
-                        "Your router request (" + ref + ") has been updated to **" + newStatus + "**.",
-                        "System Notification"
-                );
+                // Email and news post are delivered by OutboxRelay after the commit
+                logger.info("Order status updated. Reference: {}, New Status: {}",
+                        updatedOrder.getReferenceNumber(), newStatus);
             } else {
                 logger.warn("Attempted to update non-existent order ID: {}", id);
             }
@@ -140,12 +255,12 @@ public class OrderController {
 
     // 🔹 Get user’s own router requests
     @GetMapping("/user")
-    public ResponseEntity<List<Order>> getUserOrders(Authentication authentication) {
+    public ResponseEntity<List<OrderSummaryDTO>> getUserOrders(Authentication authentication) {
         String email = authentication.getName();
         logger.info("Fetching orders for user: {}", email);
 
         long startTime = System.currentTimeMillis();
-        List<Order> orders = orderService.getOrdersByEmail(email);
+        List<OrderSummaryDTO> orders = orderService.getOrderSummariesByEmail(email);
         long duration = System.currentTimeMillis() - startTime;
 
         if (orders.isEmpty()) {
@@ -156,28 +271,4 @@ public class OrderController {
 
         return ResponseEntity.ok(orders);
     }
-
-    // 🔸 Helper to map tracking info
-    private List<Map<String, Object>> mapOrdersWithTracking(List<Order> orders) {
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Order order : orders) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", order.getRouterOrderID());
-            map.put("referenceNumber", order.getReferenceNumber());
-            map.put("sitePrimaryEmail", order.getSitePrimaryEmail());
-            map.put("orderDate", order.getOrderDate());
-            map.put("priorityLevel", order.getPriorityLevel());
-            map.put("status", order.getStatus());
-
-            OrderTracking tracking = orderTrackingRepository.findByOrderRouterOrderID(order.getRouterOrderID()).orElse(null);
-            map.put("trackingReference", tracking != null ? tracking.getReferenceNumber() : "N/A");
-
-            if (tracking == null) {
-                logger.warn("No tracking data found for Order ID: {}", order.getRouterOrderID());
-            }
-
-            result.add(map);
-        }
-        return result;
-    }
 }
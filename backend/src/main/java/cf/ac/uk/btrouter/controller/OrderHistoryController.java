@@ -1,5 +1,6 @@
 package cf.ac.uk.btrouter.controller;
 
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
 import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.model.OrderTracking;
 import cf.ac.uk.btrouter.service.NewsService;
@@ -36,13 +37,13 @@ public class OrderHistoryController {
 
     // Get users order history
     @GetMapping("/history")
-    public ResponseEntity<List<Order>> getOrderHistory(Authentication authentication) {
+    public ResponseEntity<List<OrderSummaryDTO>> getOrderHistory(Authentication authentication) {
         long start = System.currentTimeMillis();
         String userEmail = authentication.getName(); // Get the logged-in user's email
         logger.info("Fetching order history for user: {}", userEmail);
 
         try {
-            List<Order> orders = orderService.getOrdersByEmail(userEmail);
+            List<OrderSummaryDTO> orders = orderService.getOrderSummariesByEmail(userEmail);
             long end = System.currentTimeMillis();
             logger.debug("{} order(s) found for user: {} (took {} ms)", orders.size(), userEmail, end - start);
             return ResponseEntity.ok(orders);
@@ -5,11 +5,20 @@ import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
 import cf.ac.uk.btrouter.service.EmailService;
 import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderStatusHistoryService;
 import cf.ac.uk.btrouter.service.OrderTrackingService;
+import cf.ac.uk.btrouter.service.TrackingUpdateBroadcaster;
 import cf.ac.uk.btrouter.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.Map;
 
@@ -30,6 +39,12 @@ public class OrderTrackingController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private TrackingUpdateBroadcaster trackingUpdateBroadcaster;
+
+    @Autowired
+    private OrderStatusHistoryService orderStatusHistoryService;
+
     // Create new tracking for an order
     @PostMapping("/create")
     public ResponseEntity<?> createOrderTracking(@RequestBody Map<String, Long> request) {
@@ -46,42 +61,78 @@ public class OrderTrackingController {
         }
     }
 
-    // Get order status by reference number
+    // Get order status by reference number. Clients polling with If-None-Match get a 304 until the order changes
     @GetMapping("/{referenceNumber}")
-    public ResponseEntity<?> getOrderStatus(@PathVariable String referenceNumber) {
+    public ResponseEntity<?> getOrderStatus(@PathVariable String referenceNumber,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            OrderTracking tracking = orderTrackingService.getOrderTracking(referenceNumber);
-            Order order = orderRepository.findById(tracking.getRouterOrderID())
-                .orElseThrow(() -> new RuntimeException("Order not found"));
+            OrderTrackingService.TrackingSnapshot snapshot = orderTrackingService.getTrackingSnapshot(referenceNumber)
+                .orElseThrow(() -> new RuntimeException("Order not found with reference: " + referenceNumber));
+
+            if (etagMatches(ifNoneMatch, snapshot.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+            }
+            return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(snapshot.view());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
 
-            OrderTrackingDTO response = OrderTrackingDTO.builder()
-                .referenceNumber(tracking.getReferenceNumber())
-                .status(tracking.getStatus())
-                .canModify(tracking.isCanModify())
-                .canCancel(tracking.isCanCancel())
-                .createdAt(tracking.getCreatedAt())
-                .updatedAt(tracking.getUpdatedAt())
-                .routerName(order.getRouter().getRouterName())
-                .customerName(order.getCustomer().getCustomerName())
-                .numRouters(order.getNumRouters())
-                .siteName(order.getSiteName())
-                .siteAddress(order.getSiteAddress())
-                .sitePostcode(order.getSitePostcode())
-                .sitePrimaryEmail(order.getSitePrimaryEmail())
-                .sitePhoneNumber(order.getSitePhoneNumber())
-                .siteContactName(order.getSiteContactName())
-                .priorityLevel(order.getPriorityLevel())
-                .vlanType(order.getVlans().toString())
-                .insideConnections(order.getInsideConnections())
-                .additionalInformation(order.getAdditionalInformation())
-                .build();
+    // Server-Sent Events stream of status changes, instead of polling the endpoint above.
+    // Browsers resend the last event id on reconnect, so a client that is up to date receives nothing new.
+    // Returns SseEmitter rather than ResponseEntity<?> so MVC treats it as a stream; errors are raised instead.
+    @GetMapping("/{referenceNumber}/stream")
+    public SseEmitter streamOrderStatus(@PathVariable String referenceNumber,
+                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                        Authentication authentication,
+                                        HttpServletRequest request) {
+        // Signed-in users are capped per account, anything else per client address as resolved from
+        // trusted proxies' X-Forwarded-For
+        String clientId = authentication != null ? authentication.getName() : request.getRemoteAddr();
+        try {
+            return trackingUpdateBroadcaster.subscribe(referenceNumber, clientId, lastEventId,
+                    () -> orderTrackingService.getTrackingSnapshot(referenceNumber))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Order not found with reference: " + referenceNumber));
+        } catch (TrackingUpdateBroadcaster.StreamLimitException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
+    }
 
-            return ResponseEntity.ok(response);
+    // Every status the order has been through, oldest first
+    @GetMapping("/{referenceNumber}/history")
+    public ResponseEntity<?> getOrderHistory(@PathVariable String referenceNumber) {
+        try {
+            OrderTracking tracking = orderTrackingService.getOrderTracking(referenceNumber);
+            return ResponseEntity.ok(orderStatusHistoryService.getTimeline(tracking.getRouterOrderID()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         }
     }
 
+    // If-None-Match may list several tags, weak or strong, or *
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Cancel order by reference number
     @PostMapping("/{referenceNumber}/cancel")
     public ResponseEntity<?> cancelOrder(@PathVariable String referenceNumber) {
@@ -1,48 +1,135 @@
 package cf.ac.uk.btrouter.controller;
 
+import cf.ac.uk.btrouter.service.BulkOrderExportService;
+import cf.ac.uk.btrouter.service.ExportJobService;
 import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import cf.ac.uk.btrouter.service.SpreadsheetSnapshotService;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.util.concurrent.CompletableFuture;
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/spreadsheet")
 public class SpreadsheetController {
 
     private final SpreadsheetGenerationService spreadsheetService;
+    private final ExportJobService exportJobService;
+    private final SpreadsheetSnapshotService snapshotService;
+    private final BulkOrderExportService bulkOrderExportService;
 
-    public SpreadsheetController(SpreadsheetGenerationService spreadsheetService) {
+    public SpreadsheetController(SpreadsheetGenerationService spreadsheetService, ExportJobService exportJobService,
+                                 SpreadsheetSnapshotService snapshotService, BulkOrderExportService bulkOrderExportService) {
         this.spreadsheetService = spreadsheetService;
+        this.exportJobService = exportJobService;
+        this.snapshotService = snapshotService;
+        this.bulkOrderExportService = bulkOrderExportService;
     }
 
+    // Served from the current snapshot, which is only rebuilt when orders change; clients that send
+    // the ETag back in If-None-Match get 304 instead of the file
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadSpreadsheet(@RequestParam(name = "separateSheets", required = false) String separateCustomers) {
-        File file = new File("orders.xlsx");
+    public ResponseEntity<?> downloadSpreadsheet(@RequestParam(name = "separateSheets", required = false) String separateCustomers,
+                                                 WebRequest request) throws IOException {
         boolean isSeparate = Boolean.parseBoolean(separateCustomers);
-        spreadsheetService.write(file, isSeparate);
+        SpreadsheetSnapshotService.Snapshot snapshot = snapshotService.getSnapshot(isSeparate);
+
+        if (request.checkNotModified(snapshot.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.etag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders.xlsx")
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(snapshot.file()));
+    }
+
+    // One workbook per customer in a ZIP; workbooks are built in parallel and added as each one finishes
+    @GetMapping("/download/customers")
+    public ResponseEntity<StreamingResponseBody> downloadCustomerBundle() {
+        StreamingResponseBody body = spreadsheetService::writeCustomerBundle;
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders-by-customer.zip")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    // Flat exports of every order for the BI pipeline, written as rows arrive from the database
+    @GetMapping("/orders.csv")
+    public ResponseEntity<StreamingResponseBody> exportOrdersCsv(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return StreamingDownloads.of(acceptEncoding, "orders.csv", MediaType.parseMediaType("text/csv;charset=UTF-8"),
+                bulkOrderExportService::writeCsv);
+    }
 
+    @GetMapping("/orders.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportOrdersNdjson(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return StreamingDownloads.of(acceptEncoding, "orders.ndjson", MediaType.APPLICATION_NDJSON, bulkOrderExportService::writeNdjson);
+    }
+
+    // Start a background export (or join the identical one already running); poll the status URL,
+    // then fetch the file from the download URL once the status is DONE
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitExportJob(@RequestParam(defaultValue = "false") boolean separateSheets,
+                                             @RequestParam(defaultValue = "false") boolean perCustomer) {
+        ExportJobService.Type type = perCustomer ? ExportJobService.Type.CUSTOMER_BUNDLE
+                : separateSheets ? ExportJobService.Type.ORDERS_BY_CUSTOMER_SHEET
+                : ExportJobService.Type.ORDERS;
+        ExportJobService.ExportJob job;
         try {
-            InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
+            job = exportJobService.submit(type);
+        } catch (ExportJobService.JobQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Error: " + e.getMessage());
+        }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders.xlsx")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus().name());
+        response.put("statusUrl", "/api/spreadsheet/jobs/" + job.getId());
+        response.put("downloadUrl", "/api/spreadsheet/jobs/" + job.getId() + "/file");
+        return ResponseEntity.accepted().location(URI.create("/api/spreadsheet/jobs/" + job.getId())).body(response);
+    }
 
-        } catch (FileNotFoundException e) {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getExportJob(@PathVariable String id) {
+        return exportJobService.getJob(id)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.toStatus()))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("Error: Export job not found or expired"));
+    }
+
+    @GetMapping("/jobs/{id}/file")
+    public ResponseEntity<?> downloadExportJob(@PathVariable String id) {
+        Optional<ExportJobService.ExportJob> found = exportJobService.getJob(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Error: Export job not found or expired");
+        }
+        ExportJobService.ExportJob job = found.get();
+        if (job.getStatus() != ExportJobService.Status.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: Export job is " + job.getStatus());
         }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.getType().fileName())
+                .contentType(MediaType.parseMediaType(job.getType().contentType()))
+                .body(new FileSystemResource(job.getFile()));
     }
 
 }
-
@@ -0,0 +1,48 @@
+package cf.ac.uk.btrouter.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.zip.GZIPOutputStream;
+
+// Attachments written straight into the response as they are produced. Gzipped here rather than by the
+// connector, so an export is compressed whatever its content type, when the client accepts it.
+final class StreamingDownloads {
+
+    private StreamingDownloads() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> of(String acceptEncoding, String fileName,
+                                                    MediaType contentType, StreamingResponseBody writer) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = !gzip ? writer : out -> {
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            writer.writeTo(compressed);
+            compressed.finish();
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(contentType);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -5,7 +5,6 @@ import cf.ac.uk.btrouter.model.User;
 import cf.ac.uk.btrouter.repository.UserRepository;
 import cf.ac.uk.btrouter.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -50,24 +49,7 @@ public class UserController {
 
     @PutMapping("admin/users/{id}")
     public ResponseEntity<User> updateUser(@PathVariable int id, @RequestBody User userUpdate) {
-
-        User currentUser = userService.findById(id);
-        if (currentUser == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-        }
-
-        currentUser.setFirstName(userUpdate.getFirstName());
-        currentUser.setLastName(userUpdate.getLastName());
-        currentUser.setEmail(userUpdate.getEmail());
-        currentUser.setRole(userUpdate.getRole());
-
-        // Update password only if a new one is provided
-        if (userUpdate.getPassword() != null && !userUpdate.getPassword().isEmpty()) {
-            currentUser.setPassword(userUpdate.getPassword());
-        }
-        userService.saveUser(currentUser);
-
-        return ResponseEntity.ok(currentUser);
+        return ResponseEntity.ok(userService.updateUser(id, userUpdate));
     }
 
 
@@ -0,0 +1,23 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Row of the admin order list, built by a single order/tracking join query
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminOrderDTO {
+    private Long id;
+    private String referenceNumber;
+    private String sitePrimaryEmail;
+    private LocalDateTime orderDate;
+    private String priorityLevel;
+    private String status;
+
+    // "N/A" when the order has no tracking record yet
+    private String trackingReference;
+}
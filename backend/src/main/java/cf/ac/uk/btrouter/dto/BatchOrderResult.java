@@ -0,0 +1,25 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Outcome of one item in a batch order request, matched to the request by its position
+@Getter
+@AllArgsConstructor
+public class BatchOrderResult {
+    private int index;
+    private boolean success;
+    private Long orderId;
+    private String referenceNumber;
+    // Only set when the batch was created with tracking
+    private String trackingReference;
+    private String error;
+
+    public static BatchOrderResult created(int index, Long orderId, String referenceNumber, String trackingReference) {
+        return new BatchOrderResult(index, true, orderId, referenceNumber, trackingReference, null);
+    }
+
+    public static BatchOrderResult failed(int index, String error) {
+        return new BatchOrderResult(index, false, null, null, null, error);
+    }
+}
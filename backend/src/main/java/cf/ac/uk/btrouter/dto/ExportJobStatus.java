@@ -0,0 +1,18 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// State of a background export. The file can be downloaded once status is DONE, until the job expires.
+@Getter
+@AllArgsConstructor
+public class ExportJobStatus {
+    private String id;
+    private String type;
+    private String status;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
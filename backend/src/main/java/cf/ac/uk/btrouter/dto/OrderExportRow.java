@@ -0,0 +1,29 @@
+package cf.ac.uk.btrouter.dto;
+
+import java.time.LocalDateTime;
+
+// One order as exported, read straight from a streamed result set rather than loaded as an entity
+public record OrderExportRow(
+        Long id,
+        String referenceNumber,
+        String routerName,
+        String presetName,
+        String customerName,
+        String primaryOutsideConnections,
+        String secondaryOutsideConnections,
+        String insideConnections,
+        String vlans,
+        Boolean dhcp,
+        Integer numRouters,
+        String siteName,
+        String siteAddress,
+        String sitePostcode,
+        String sitePrimaryEmail,
+        String siteSecondaryEmail,
+        String sitePhoneNumber,
+        String siteContactName,
+        String priorityLevel,
+        String status,
+        String additionalInformation,
+        LocalDateTime orderDate) {
+}
@@ -0,0 +1,23 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Optional filters for the admin order listing; null fields are not applied
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderFilter {
+    private String status;
+    private String priorityLevel;
+    private Long customerId;
+
+    // Inclusive lower and exclusive upper bound on the order date
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
@@ -0,0 +1,23 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// One change to the admin order queue. order is the row as it is now (null if it no longer exists);
+// clients upsert it by id, or drop it once its status leaves the queue they are showing.
+@Getter
+@AllArgsConstructor
+public class OrderQueueEvent {
+
+    public enum Type {
+        CREATED,
+        STATUS_CHANGED,
+        CANCELLED,
+        UPDATED
+    }
+
+    private Type type;
+    private long sequence;
+    private Long orderId;
+    private AdminOrderDTO order;
+}
@@ -0,0 +1,14 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Pending orders sent when an admin subscribes; events with a sequence at or below this one are already included
+@Getter
+@AllArgsConstructor
+public class OrderQueueSnapshot {
+    private long sequence;
+    private List<AdminOrderDTO> orders;
+}
@@ -0,0 +1,31 @@
+package cf.ac.uk.btrouter.dto;
+
+import java.time.LocalDateTime;
+
+// Order history row. Keeps the customer.customerName / router.routerName shape the order history
+// page already reads, without serializing the full customer, router and preset entities.
+public record OrderSummaryDTO(Long routerOrderID,
+                              String referenceNumber,
+                              String siteName,
+                              String sitePrimaryEmail,
+                              String priorityLevel,
+                              String status,
+                              LocalDateTime orderDate,
+                              Integer numRouters,
+                              CustomerRef customer,
+                              RouterRef router) {
+
+    // Flat constructor used by the JPQL projection
+    public OrderSummaryDTO(Long routerOrderID, String referenceNumber, String siteName, String sitePrimaryEmail,
+                           String priorityLevel, String status, LocalDateTime orderDate, Integer numRouters,
+                           String customerName, String routerName) {
+        this(routerOrderID, referenceNumber, siteName, sitePrimaryEmail, priorityLevel, status, orderDate,
+                numRouters, new CustomerRef(customerName), new RouterRef(routerName));
+    }
+
+    public record CustomerRef(String customerName) {
+    }
+
+    public record RouterRef(String routerName) {
+    }
+}
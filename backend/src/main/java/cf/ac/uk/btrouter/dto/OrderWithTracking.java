@@ -0,0 +1,14 @@
+package cf.ac.uk.btrouter.dto;
+
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.OrderTracking;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A new order and the tracking row created with it in the same transaction
+@Getter
+@AllArgsConstructor
+public class OrderWithTracking {
+    private Order order;
+    private OrderTracking tracking;
+}
@@ -0,0 +1,23 @@
+package cf.ac.uk.btrouter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Orders entering one status in [from, to), and the time orders spent in it before leaving it in [from, to).
+// Percentiles are nearest-rank, in milliseconds, and null when there are no transitions.
+@Getter
+@AllArgsConstructor
+public class StageDurationStats {
+    private String status;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long entered;
+    private long transitions;
+    private Long p50Ms;
+    private Long p90Ms;
+    private Long p95Ms;
+    private Long p99Ms;
+    private Long maxMs;
+}
@@ -5,12 +5,21 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Entity
 @Getter
 @Setter
-@Table(name = "router_orders")
+@Table(name = "router_orders", indexes = {
+        // Keyset pagination for the admin listing, one index per supported filter
+        @Index(name = "idx_router_orders_created", columnList = "created_at, router_order_id"),
+        @Index(name = "idx_router_orders_status_created", columnList = "status, created_at, router_order_id"),
+        @Index(name = "idx_router_orders_priority_created", columnList = "priority_level, created_at, router_order_id"),
+        @Index(name = "idx_router_orders_customer_created", columnList = "customer_id, created_at, router_order_id"),
+        // Latest change, for the export snapshot version
+        @Index(name = "idx_router_orders_updated", columnList = "updated_at"),
+        @Index(name = "uk_router_orders_reference", columnList = "reference_number", unique = true)
+})
+@EntityListeners(OrderReferenceListener.class)
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -59,6 +68,9 @@ public class Order {
 
     @Column(name = "created_at", updatable = false)
     private LocalDateTime orderDate;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
     private String status;
 
     private String ipAddress;
@@ -66,9 +78,6 @@ public class Order {
 
     @PrePersist
     public void setDefaultValues() {
-        if (referenceNumber == null || referenceNumber.isEmpty()) {
-            referenceNumber = "BT-" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase();
-        }
         if (orderDate == null) {
             orderDate = LocalDateTime.now();
         }
@@ -78,6 +87,12 @@ public class Order {
         if (numRouters == null || numRouters <= 0) {
             numRouters = 1;
         }
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
     }
 
     public String getEmail() {
@@ -0,0 +1,24 @@
+package cf.ac.uk.btrouter.model;
+
+import cf.ac.uk.btrouter.service.ReferenceNumberGenerator;
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.ObjectProvider;
+
+// Fills in the reference for orders saved without one; Hibernate builds this through Spring,
+// so it shares the application's generator (and its sequence) with OrderService
+public class OrderReferenceListener {
+
+    // Looked up lazily so JPA-only slices without a generator bean can still start
+    private final ObjectProvider<ReferenceNumberGenerator> referenceNumberGenerator;
+
+    public OrderReferenceListener(ObjectProvider<ReferenceNumberGenerator> referenceNumberGenerator) {
+        this.referenceNumberGenerator = referenceNumberGenerator;
+    }
+
+    @PrePersist
+    public void assignReference(Order order) {
+        if (order.getReferenceNumber() == null || order.getReferenceNumber().isEmpty()) {
+            referenceNumberGenerator.ifAvailable(generator -> order.setReferenceNumber(generator.next()));
+        }
+    }
+}
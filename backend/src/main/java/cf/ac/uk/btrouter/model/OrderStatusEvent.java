@@ -0,0 +1,56 @@
+package cf.ac.uk.btrouter.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One status transition of an order, appended in the same transaction as the change and never updated.
+// durationMs is the time spent in fromStatus, stored so stage statistics need no self-join.
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "order_status_events", indexes = {
+        // Timeline of one order
+        @Index(name = "idx_order_status_events_order", columnList = "router_order_id, occurred_at"),
+        // Orders entering a status in a time range
+        @Index(name = "idx_order_status_events_status", columnList = "to_status, occurred_at"),
+        // Time spent in a stage, read from the index alone
+        @Index(name = "idx_order_status_events_stage", columnList = "from_status, occurred_at, duration_ms")
+})
+public class OrderStatusEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "router_order_id", nullable = false, updatable = false)
+    private Long routerOrderID;
+
+    @Column(name = "reference_number", length = 50, updatable = false)
+    private String referenceNumber;
+
+    // Null for the first event of an order
+    @Column(name = "from_status", length = 50, updatable = false)
+    private String fromStatus;
+
+    @Column(name = "to_status", nullable = false, length = 50, updatable = false)
+    private String toStatus;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+
+    @Column(name = "duration_ms", updatable = false)
+    private Long durationMs;
+
+    public OrderStatusEvent(Long routerOrderID, String referenceNumber, String fromStatus, String toStatus,
+                            LocalDateTime occurredAt, Long durationMs) {
+        this.routerOrderID = routerOrderID;
+        this.referenceNumber = referenceNumber;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.occurredAt = occurredAt;
+        this.durationMs = durationMs;
+    }
+}
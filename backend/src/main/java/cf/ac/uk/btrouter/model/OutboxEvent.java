@@ -0,0 +1,71 @@
+package cf.ac.uk.btrouter.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// An order side effect (email, news post) recorded in the same transaction as the change that
+// caused it, and delivered later by OutboxRelay
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_due", columnList = "dispatched_at, available_at")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 30)
+    private Type type;
+
+    @Column(name = "router_order_id", nullable = false)
+    private Long routerOrderID;
+
+    @Column(name = "reference_number", length = 50)
+    private String referenceNumber;
+
+    // New status for STATUS_CHANGED
+    @Column(length = 50)
+    private String status;
+
+    // Also publish a news post, as the admin status update always has
+    private boolean announce;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Not picked up before this time: set on creation, pushed back while claimed or after a failure
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    private int attempts;
+
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    public OutboxEvent(Type type, Long routerOrderID, String referenceNumber) {
+        this.type = type;
+        this.routerOrderID = routerOrderID;
+        this.referenceNumber = referenceNumber;
+        this.createdAt = LocalDateTime.now();
+        this.availableAt = this.createdAt;
+    }
+
+    public enum Type {
+        ORDER_CREATED,
+        STATUS_CHANGED,
+        CANCELLED,
+        MODIFIED
+    }
+}
@@ -0,0 +1,29 @@
+package cf.ac.uk.btrouter.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// A reference generator node id leased by one running instance, so no two instances issue
+// references with the same node bits. The lease is renewed while the instance runs.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "reference_nodes")
+public class ReferenceNode {
+
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    // host:pid:random of the instance holding the lease
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(name = "lease_expires_at", nullable = false)
+    private LocalDateTime leaseExpiresAt;
+}
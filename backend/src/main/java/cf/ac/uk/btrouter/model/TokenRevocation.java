@@ -0,0 +1,30 @@
+package cf.ac.uk.btrouter.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Per-user revocation epoch (millis, strictly increasing): tokens stamped with an earlier epoch are
+// no longer accepted. Kept in the database so it survives restarts and is seen by every node
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "token_revocations", indexes = {
+        @Index(name = "idx_token_revocations_revoked_before", columnList = "revoked_before")
+})
+public class TokenRevocation {
+
+    @Id
+    @Column(length = 255)
+    private String email;
+
+    @Column(name = "revoked_before", nullable = false)
+    private long revokedBefore;
+
+    public TokenRevocation(String email, long revokedBefore) {
+        this.email = email;
+        this.revokedBefore = revokedBefore;
+    }
+}
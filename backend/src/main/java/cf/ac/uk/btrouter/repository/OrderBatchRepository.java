@@ -0,0 +1,94 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.model.Order;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+// Bulk insert for router orders. Hibernate will not batch inserts for IDENTITY ids, but the JDBC driver
+// will: with rewriteBatchedStatements the batch goes out as multi-row INSERTs and the generated keys come
+// back in order, so the AUTO_INCREMENT key used everywhere else can stay.
+@Repository
+public class OrderBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO router_orders (customer_id, router_id, router_preset_id, reference_number, " +
+                    "primary_outside_connections, secondary_outside_connections, inside_connections, vlans, dhcp, " +
+                    "num_routers, site_name, site_address, site_postcode, site_primary_email, site_secondary_email, " +
+                    "site_phone_number, site_contact_name, priority_level, additional_information, add_another_router, " +
+                    "created_at, updated_at, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Insert all orders in one JDBC batch and set their generated ids
+    public void insertAll(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        bind(ps, orders.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return orders.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < orders.size(); i++) {
+            orders.get(i).setRouterOrderID(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Order order) throws SQLException {
+        ps.setLong(1, order.getCustomer().getCustomerID());
+        ps.setLong(2, order.getRouter().getRouterID());
+        if (order.getRouterPreset() != null) {
+            ps.setLong(3, order.getRouterPreset().getRouterPresetID());
+        } else {
+            ps.setNull(3, Types.BIGINT);
+        }
+        ps.setString(4, order.getReferenceNumber());
+        ps.setString(5, order.getPrimaryOutsideConnections());
+        ps.setString(6, order.getSecondaryOutsideConnections());
+        ps.setString(7, order.getInsideConnections());
+        ps.setString(8, order.getVlans().name());
+        ps.setBoolean(9, Boolean.TRUE.equals(order.getDhcp()));
+        ps.setInt(10, order.getNumRouters());
+        ps.setString(11, order.getSiteName());
+        ps.setString(12, order.getSiteAddress());
+        ps.setString(13, order.getSitePostcode());
+        ps.setString(14, order.getSitePrimaryEmail());
+        ps.setString(15, order.getSiteSecondaryEmail());
+        ps.setString(16, order.getSitePhoneNumber());
+        ps.setString(17, order.getSiteContactName());
+        ps.setString(18, order.getPriorityLevel());
+        ps.setString(19, order.getAdditionalInformation());
+        ps.setBoolean(20, Boolean.TRUE.equals(order.getAddAnotherRouter()));
+        ps.setTimestamp(21, Timestamp.valueOf(order.getOrderDate()));
+        ps.setTimestamp(22, Timestamp.valueOf(order.getOrderDate()));
+        ps.setString(23, order.getStatus());
+    }
+}
@@ -0,0 +1,101 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.dto.OrderExportRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// Streams orders for exports one row at a time. Everything an export needs comes from one joined query,
+// because a streaming MySQL connection cannot run another statement until the result set is drained.
+@Repository
+public class OrderExportRepository {
+
+    private static final String SELECT_SQL =
+            "SELECT o.router_order_id, o.reference_number, r.router_name, p.router_preset_name, c.customer_name, " +
+                    "o.primary_outside_connections, o.secondary_outside_connections, o.inside_connections, o.vlans, " +
+                    "o.dhcp, o.num_routers, o.site_name, o.site_address, o.site_postcode, o.site_primary_email, " +
+                    "o.site_secondary_email, o.site_phone_number, o.site_contact_name, o.priority_level, o.status, " +
+                    "o.additional_information, o.created_at " +
+                    "FROM router_orders o " +
+                    "JOIN routers r ON r.router_id = o.router_id " +
+                    "JOIN customers c ON c.customer_id = o.customer_id " +
+                    "LEFT JOIN router_presets p ON p.router_preset_id = o.router_preset_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Changes whenever an order is added, changed or removed; all three parts come from indexes
+    public record DataVersion(long orders, long maxOrderId, LocalDateTime lastUpdated) {
+    }
+
+    // Connector/J only streams with a fetch size of Integer.MIN_VALUE; any other value buffers the whole result
+    public OrderExportRepository(DataSource dataSource,
+                                 @Value("${spreadsheet.export.fetch-size:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public DataVersion findDataVersion() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) AS orders, MAX(router_order_id) AS max_id, MAX(updated_at) AS last_updated " +
+                        "FROM router_orders",
+                (rs, rowNum) -> {
+                    Timestamp lastUpdated = rs.getTimestamp("last_updated");
+                    return new DataVersion(rs.getLong("orders"), rs.getLong("max_id"),
+                            lastUpdated != null ? lastUpdated.toLocalDateTime() : null);
+                });
+    }
+
+    public void streamAll(Consumer<OrderExportRow> consumer) {
+        jdbcTemplate.query(SELECT_SQL + " ORDER BY o.router_order_id", handler(consumer));
+    }
+
+    public void streamByEmail(String email, Consumer<OrderExportRow> consumer) {
+        jdbcTemplate.query(SELECT_SQL + " WHERE o.site_primary_email = ? ORDER BY o.created_at, o.router_order_id",
+                handler(consumer), email);
+    }
+
+    // Grouped by customer email, oldest first within each, so per-customer sheets can be cut in one pass
+    public void streamByCustomer(Consumer<OrderExportRow> consumer) {
+        jdbcTemplate.query(SELECT_SQL + " ORDER BY o.site_primary_email, o.created_at, o.router_order_id",
+                handler(consumer));
+    }
+
+    private static RowCallbackHandler handler(Consumer<OrderExportRow> consumer) {
+        return rs -> consumer.accept(mapRow(rs));
+    }
+
+    private static OrderExportRow mapRow(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new OrderExportRow(
+                rs.getLong("router_order_id"),
+                rs.getString("reference_number"),
+                rs.getString("router_name"),
+                rs.getString("router_preset_name"),
+                rs.getString("customer_name"),
+                rs.getString("primary_outside_connections"),
+                rs.getString("secondary_outside_connections"),
+                rs.getString("inside_connections"),
+                rs.getString("vlans"),
+                rs.getObject("dhcp", Boolean.class),
+                rs.getObject("num_routers", Integer.class),
+                rs.getString("site_name"),
+                rs.getString("site_address"),
+                rs.getString("site_postcode"),
+                rs.getString("site_primary_email"),
+                rs.getString("site_secondary_email"),
+                rs.getString("site_phone_number"),
+                rs.getString("site_contact_name"),
+                rs.getString("priority_level"),
+                rs.getString("status"),
+                rs.getString("additional_information"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+}
@@ -1,18 +1,32 @@
 package cf.ac.uk.btrouter.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
 import cf.ac.uk.btrouter.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
 
     // Fetch orders only for the logged-in user, sorted by order date
+    @EntityGraph(attributePaths = {"customer", "router", "routerPreset"})
     @Query("SELECT o FROM Order o WHERE o.sitePrimaryEmail = :email ORDER BY o.orderDate DESC")
     List<Order> findOrdersByEmail(@Param("email") String email);
 
+    // Order history list: only the columns the list shows, in one query
+    @Query("SELECT new cf.ac.uk.btrouter.dto.OrderSummaryDTO(o.routerOrderID, o.referenceNumber, o.siteName, " +
+            "o.sitePrimaryEmail, o.priorityLevel, o.status, o.orderDate, o.numRouters, c.customerName, r.routerName) " +
+            "FROM Order o LEFT JOIN o.customer c LEFT JOIN o.router r " +
+            "WHERE o.sitePrimaryEmail = :email ORDER BY o.orderDate DESC")
+    List<OrderSummaryDTO> findOrderSummariesByEmail(@Param("email") String email);
+
+    // Detail view: load the order and everything it serializes in a single join
+    @EntityGraph(attributePaths = {"customer", "router", "routerPreset", "routerPreset.router", "routerPreset.customer"})
     @Query("SELECT o FROM Order o WHERE o.routerOrderID = :orderId AND o.sitePrimaryEmail = :email")
     Order findOrderByIdAndEmail(@Param("orderId") Long orderId, @Param("email") String email);
 
@@ -26,4 +40,23 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     @Query("SELECT DISTINCT o.sitePrimaryEmail FROM Order o")
     List<String> findDistinctBySitePrimaryEmail();
+
+    // Admin list rows with their tracking reference, in one query rather than one lookup per order
+    @Query("SELECT new cf.ac.uk.btrouter.dto.AdminOrderDTO(o.routerOrderID, o.referenceNumber, o.sitePrimaryEmail, " +
+            "o.orderDate, o.priorityLevel, o.status, COALESCE(t.referenceNumber, 'N/A')) " +
+            "FROM Order o LEFT JOIN OrderTracking t ON t.routerOrderID = o.routerOrderID " +
+            "ORDER BY o.routerOrderID")
+    List<AdminOrderDTO> findAllAdminOrders();
+
+    @Query("SELECT new cf.ac.uk.btrouter.dto.AdminOrderDTO(o.routerOrderID, o.referenceNumber, o.sitePrimaryEmail, " +
+            "o.orderDate, o.priorityLevel, o.status, COALESCE(t.referenceNumber, 'N/A')) " +
+            "FROM Order o LEFT JOIN OrderTracking t ON t.routerOrderID = o.routerOrderID " +
+            "WHERE o.status = :status ORDER BY o.orderDate DESC")
+    List<AdminOrderDTO> findAdminOrdersByStatus(@Param("status") String status);
+
+    @Query("SELECT new cf.ac.uk.btrouter.dto.AdminOrderDTO(o.routerOrderID, o.referenceNumber, o.sitePrimaryEmail, " +
+            "o.orderDate, o.priorityLevel, o.status, COALESCE(t.referenceNumber, 'N/A')) " +
+            "FROM Order o LEFT JOIN OrderTracking t ON t.routerOrderID = o.routerOrderID " +
+            "WHERE o.routerOrderID IN :ids")
+    List<AdminOrderDTO> findAdminOrdersByIds(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderCursor;
+import cf.ac.uk.btrouter.dto.OrderFilter;
+
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    // Admin list rows matching the filter, ordered by (order date, id), starting after the cursor
+    List<AdminOrderDTO> findPage(OrderFilter filter, OrderCursor after, boolean ascending, int limit);
+}
@@ -0,0 +1,67 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderCursor;
+import cf.ac.uk.btrouter.dto.OrderFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Keyset pagination: seek past the last (created_at, router_order_id) seen instead of using OFFSET,
+    // so every page costs the same index range scan however deep the client pages
+    @Override
+    public List<AdminOrderDTO> findPage(OrderFilter filter, OrderCursor after, boolean ascending, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new cf.ac.uk.btrouter.dto.AdminOrderDTO(o.routerOrderID, o.referenceNumber, o.sitePrimaryEmail, " +
+                        "o.orderDate, o.priorityLevel, o.status, COALESCE(t.referenceNumber, 'N/A')) " +
+                        "FROM Order o LEFT JOIN OrderTracking t ON t.routerOrderID = o.routerOrderID WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (filter != null) {
+            if (filter.getStatus() != null) {
+                jpql.append(" AND o.status = :status");
+                params.put("status", filter.getStatus());
+            }
+            if (filter.getPriorityLevel() != null) {
+                jpql.append(" AND o.priorityLevel = :priorityLevel");
+                params.put("priorityLevel", filter.getPriorityLevel());
+            }
+            if (filter.getCustomerId() != null) {
+                jpql.append(" AND o.customer.customerID = :customerId");
+                params.put("customerId", filter.getCustomerId());
+            }
+            if (filter.getFrom() != null) {
+                jpql.append(" AND o.orderDate >= :from");
+                params.put("from", filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                jpql.append(" AND o.orderDate < :to");
+                params.put("to", filter.getTo());
+            }
+        }
+
+        if (after != null) {
+            String op = ascending ? ">" : "<";
+            jpql.append(" AND (o.orderDate ").append(op).append(" :afterDate")
+                    .append(" OR (o.orderDate = :afterDate AND o.routerOrderID ").append(op).append(" :afterId))");
+            params.put("afterDate", after.orderDate());
+            params.put("afterId", after.id());
+        }
+
+        String direction = ascending ? "ASC" : "DESC";
+        jpql.append(" ORDER BY o.orderDate ").append(direction).append(", o.routerOrderID ").append(direction);
+
+        TypedQuery<AdminOrderDTO> query = entityManager.createQuery(jpql.toString(), AdminOrderDTO.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,35 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.model.OrderStatusEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderStatusEventRepository extends JpaRepository<OrderStatusEvent, Long> {
+
+    List<OrderStatusEvent> findByRouterOrderIDOrderByOccurredAtAscIdAsc(Long routerOrderID);
+
+    // When the order entered its current status; pass PageRequest.of(0, 1)
+    @Query("SELECT e.occurredAt FROM OrderStatusEvent e WHERE e.routerOrderID = :orderId " +
+            "ORDER BY e.occurredAt DESC, e.id DESC")
+    List<LocalDateTime> findLatestOccurredAt(@Param("orderId") Long orderId, Pageable pageable);
+
+    // Range scan on idx_order_status_events_stage; no other column is read
+    @Query("SELECT e.durationMs FROM OrderStatusEvent e WHERE e.fromStatus = :status " +
+            "AND e.occurredAt >= :from AND e.occurredAt < :to AND e.durationMs IS NOT NULL")
+    List<Long> findStageDurations(@Param("status") String status,
+                                  @Param("from") LocalDateTime from,
+                                  @Param("to") LocalDateTime to);
+
+    @Query("SELECT COUNT(e) FROM OrderStatusEvent e WHERE e.toStatus = :status " +
+            "AND e.occurredAt >= :from AND e.occurredAt < :to")
+    long countEntered(@Param("status") String status,
+                      @Param("from") LocalDateTime from,
+                      @Param("to") LocalDateTime to);
+}
@@ -1,7 +1,10 @@
 package cf.ac.uk.btrouter.repository;
 
+import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
 import cf.ac.uk.btrouter.model.OrderTracking;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
@@ -13,4 +16,13 @@ public interface OrderTrackingRepository extends JpaRepository<OrderTracking, In
 
     // Find order tracking by order id
     Optional<OrderTracking> findByOrderRouterOrderID(Long routerOrderID);
+
+    // Public tracking view built in one joined query instead of tracking, then order, then router and customer
+    @Query("SELECT new cf.ac.uk.btrouter.dto.OrderTrackingDTO(t.referenceNumber, t.status, t.canModify, t.canCancel, " +
+            "t.createdAt, t.updatedAt, r.routerName, c.customerName, o.numRouters, o.siteName, o.siteAddress, " +
+            "o.sitePostcode, o.sitePrimaryEmail, o.sitePhoneNumber, o.siteContactName, o.priorityLevel, " +
+            "CAST(o.vlans AS String), o.insideConnections, o.additionalInformation) " +
+            "FROM OrderTracking t JOIN t.order o JOIN o.router r JOIN o.customer c " +
+            "WHERE t.referenceNumber = :referenceNumber")
+    Optional<OrderTrackingDTO> findTrackingView(@Param("referenceNumber") String referenceNumber);
 }
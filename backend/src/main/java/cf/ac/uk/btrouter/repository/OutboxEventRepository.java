@@ -0,0 +1,51 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("SELECT e.id FROM OutboxEvent e WHERE e.dispatchedAt IS NULL AND e.availableAt <= :now " +
+            "AND e.attempts < :maxAttempts ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    // Take a lease on one event; only one node's update can match, so each claim is exclusive
+    // until the lease runs out (e.g. the node died mid-dispatch), after which it is retried
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.availableAt = :leaseUntil " +
+            "WHERE e.id = :id AND e.dispatchedAt IS NULL AND e.availableAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.dispatchedAt = :at, e.attempts = e.attempts + 1, e.lastError = NULL " +
+            "WHERE e.id = :id")
+    int markDispatched(@Param("id") Long id, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.availableAt = :retryAt, e.lastError = :error " +
+            "WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("retryAt") LocalDateTime retryAt, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.announce = false WHERE e.id = :id")
+    int markAnnounced(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent e WHERE e.dispatchedAt < :cutoff")
+    int deleteDispatchedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
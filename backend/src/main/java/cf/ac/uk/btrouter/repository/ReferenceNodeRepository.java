@@ -0,0 +1,42 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.model.ReferenceNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReferenceNodeRepository extends JpaRepository<ReferenceNode, Integer> {
+
+    @Query("SELECT n.nodeId FROM ReferenceNode n ORDER BY n.nodeId")
+    List<Integer> findNodeIds();
+
+    @Query("SELECT n.nodeId FROM ReferenceNode n WHERE n.leaseExpiresAt < :now ORDER BY n.nodeId")
+    List<Integer> findExpiredNodeIds(@Param("now") LocalDateTime now);
+
+    // Plain insert rather than save(): a merge would overwrite a lease another instance just took
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO reference_nodes (node_id, owner, lease_expires_at) VALUES (:nodeId, :owner, :until)",
+            nativeQuery = true)
+    int insert(@Param("nodeId") int nodeId, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    // Only one instance's update can match an expired lease, so taking one over is exclusive
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReferenceNode n SET n.owner = :owner, n.leaseExpiresAt = :until " +
+            "WHERE n.nodeId = :nodeId AND n.leaseExpiresAt < :now")
+    int takeOver(@Param("nodeId") int nodeId, @Param("owner") String owner,
+                 @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReferenceNode n SET n.leaseExpiresAt = :until WHERE n.nodeId = :nodeId AND n.owner = :owner")
+    int renew(@Param("nodeId") int nodeId, @Param("owner") String owner, @Param("until") LocalDateTime until);
+}
@@ -0,0 +1,18 @@
+package cf.ac.uk.btrouter.repository;
+
+import cf.ac.uk.btrouter.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TokenRevocation r WHERE r.revokedBefore < :cutoff")
+    int deleteRevokedBefore(@Param("cutoff") long cutoff);
+}
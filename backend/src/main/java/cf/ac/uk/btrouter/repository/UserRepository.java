@@ -10,9 +10,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Find user by email
     Optional<User> findByEmail(String email);
 
-    // Find user by reset token
-    Optional<User> findByResetToken(String token);
-
     // Delete user
     void deleteByEmail(String email);
 
@@ -0,0 +1,155 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderQueueEvent;
+import cf.ac.uk.btrouter.dto.OrderQueueSnapshot;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Live admin order queue: a snapshot of pending orders on subscribe, then one event per committed
+// change, so admin screens no longer reload the whole pending list on a timer.
+// The simple broker is per node; running several nodes needs a broker relay in WebSocketConfig.
+// Nothing is loaded while nobody is subscribed, and rows are loaded and sent off the committing thread.
+@Service
+public class AdminOrderFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminOrderFeed.class);
+
+    public static final String TOPIC = "/topic/admin/orders";
+
+    private final OrderRepository orderRepository;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    // One thread, so changes are loaded and sent in commit order
+    private final ThreadPoolExecutor executor;
+
+    // Guarded by this; only ever read or advanced while the rows being sent are loaded
+    private long sequence;
+
+    public AdminOrderFeed(OrderRepository orderRepository,
+                          SimpMessageSendingOperations messagingTemplate,
+                          SimpUserRegistry userRegistry,
+                          @Value("${admin.order-feed.queue:1000}") int queueSize) {
+        this.orderRepository = orderRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "admin-order-feed");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Pending orders plus the sequence they are current to
+    public OrderQueueSnapshot snapshot() {
+        long current;
+        synchronized (this) {
+            current = sequence;
+        }
+        return new OrderQueueSnapshot(current, orderRepository.findAdminOrdersByStatus("Pending"));
+    }
+
+    public void orderCreated(Long orderId) {
+        orderChanged(OrderQueueEvent.Type.CREATED, orderId);
+    }
+
+    public void ordersCreated(Collection<Long> orderIds) {
+        orderIds.forEach(this::orderCreated);
+    }
+
+    public void statusChanged(Long orderId) {
+        orderChanged(OrderQueueEvent.Type.STATUS_CHANGED, orderId);
+    }
+
+    public void cancelled(Long orderId) {
+        orderChanged(OrderQueueEvent.Type.CANCELLED, orderId);
+    }
+
+    public void updated(Long orderId) {
+        orderChanged(OrderQueueEvent.Type.UPDATED, orderId);
+    }
+
+    // Changes are collected per transaction (first type per order wins, so create + tracking is one CREATED)
+    // and sent once it commits; a rolled back change is never seen by admins
+    private void orderChanged(OrderQueueEvent.Type type, Long orderId) {
+        if (orderId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(Map.of(orderId, type));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Long, OrderQueueEvent.Type> pending =
+                (Map<Long, OrderQueueEvent.Type>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, OrderQueueEvent.Type> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AdminOrderFeed.this);
+                }
+            });
+            pending = changes;
+        }
+        pending.putIfAbsent(orderId, type);
+    }
+
+    // Admins subscribe once authenticated, so the user registry sees every subscription on this node
+    private void publish(Map<Long, OrderQueueEvent.Type> changes) {
+        if (userRegistry.findSubscriptions(subscription -> TOPIC.equals(subscription.getDestination())).isEmpty()) {
+            return;
+        }
+        try {
+            executor.execute(() -> send(changes));
+        } catch (RejectedExecutionException e) {
+            // As for a failed send: admins pick the change up on their next snapshot
+            logger.warn("Admin order feed queue full, dropped {} change(s)", changes.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Rows are read after the commit and sent under the lock, so an event with a higher sequence always
+    // carries a row at least as new as any before it, even when two transactions commit together
+    private synchronized void send(Map<Long, OrderQueueEvent.Type> changes) {
+        try {
+            Map<Long, AdminOrderDTO> rows = orderRepository.findAdminOrdersByIds(changes.keySet()).stream()
+                    .collect(Collectors.toMap(AdminOrderDTO::getId, Function.identity()));
+            changes.forEach((orderId, type) -> messagingTemplate.convertAndSend(TOPIC,
+                    new OrderQueueEvent(type, ++sequence, orderId, rows.get(orderId))));
+        } catch (RuntimeException e) {
+            // The change itself has committed; admins pick it up on their next snapshot
+            logger.warn("Could not publish {} admin order change(s): {}", changes.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.dto.OrderExportRow;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// Flat exports of every order for the BI pipeline. Rows are written as the streamed result set
+// delivers them, so memory stays constant however many orders there are.
+@Service
+public class BulkOrderExportService {
+
+    static final String[] CSV_COLUMNS = {
+            "id", "reference_number", "router_name", "preset_name", "customer_name", "primary_outside_connections",
+            "secondary_outside_connections", "inside_connections", "vlans", "dhcp", "num_routers",
+            "site_name", "site_address", "site_postcode", "site_primary_email", "site_secondary_email",
+            "site_phone_number", "site_contact_name", "priority_level", "status", "additional_information",
+            "order_date"
+    };
+
+    private final OrderExportRepository orderExportRepository;
+    private final ObjectWriter rowWriter;
+
+    public BulkOrderExportService(OrderExportRepository orderExportRepository, ObjectMapper objectMapper) {
+        this.orderExportRepository = orderExportRepository;
+        // Flushing after every row would send one tiny network write per order. Rows are separated by a
+        // newline rather than Jackson's default root separator, a space
+        this.rowWriter = objectMapper.writerFor(OrderExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+    }
+
+    // RFC 4180 CSV with a header line
+    public void writeCsv(OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeRow(CSV_COLUMNS);
+        try {
+            orderExportRepository.streamAll(row -> {
+                try {
+                    csv.writeRow(csvValues(row));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        csv.flush();
+    }
+
+    // One JSON object per line (application/x-ndjson), each line ending in a newline
+    public void writeNdjson(OutputStream out) throws IOException {
+        boolean[] written = {false};
+        try (SequenceWriter rows = rowWriter.writeValues(out)) {
+            orderExportRepository.streamAll(row -> {
+                try {
+                    rows.write(row);
+                    written[0] = true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // The separator only goes between rows; NDJSON also terminates the last one
+        if (written[0]) {
+            out.write('\n');
+        }
+    }
+
+    private static String[] csvValues(OrderExportRow row) {
+        return new String[]{
+                String.valueOf(row.id()), row.referenceNumber(), row.routerName(), row.presetName(), row.customerName(),
+                row.primaryOutsideConnections(), row.secondaryOutsideConnections(), row.insideConnections(),
+                row.vlans(), row.dhcp() != null ? row.dhcp().toString() : null,
+                row.numRouters() != null ? row.numRouters().toString() : null,
+                row.siteName(), row.siteAddress(), row.sitePostcode(), row.sitePrimaryEmail(),
+                row.siteSecondaryEmail(), row.sitePhoneNumber(), row.siteContactName(), row.priorityLevel(),
+                row.status(), row.additionalInformation(),
+                row.orderDate() != null ? row.orderDate().toString() : null
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package cf.ac.uk.btrouter.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// RFC 4180 rows for the streamed exports: CRLF line ends, nulls as empty fields, and only values with a
+// separator, quote or line break quoted (quotes doubled). Values are copied as they are, with no formatting.
+final class CsvWriter {
+
+    private final Writer writer;
+
+    CsvWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    void writeRow(String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    // A line outside the row structure, such as a section title
+    void writeLine(String line) throws IOException {
+        writer.write(line);
+        writer.write("\r\n");
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -10,10 +10,12 @@ import java.util.Optional;
 @Service
 public class CustomerService {
     private final CustomerRepository customerRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     /* CRUD Operations. */
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository, ReferenceDataCache referenceDataCache) {
         this.customerRepository = customerRepository;
+        this.referenceDataCache = referenceDataCache;
     }
     public List<Customer> getAllCustomers() {
         return customerRepository.findAll();
@@ -22,9 +24,12 @@ public class CustomerService {
         return customerRepository.findById(customerID);
     }
     public Customer saveCustomer(Customer customer) {
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        referenceDataCache.evictCustomer(saved.getCustomerID());
+        return saved;
     }
     public void deleteCustomer(Long customerID) {
         customerRepository.deleteById(customerID);
+        referenceDataCache.evictCustomer(customerID);
     }
 }
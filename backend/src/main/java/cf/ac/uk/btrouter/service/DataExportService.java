@@ -1,70 +1,143 @@
 package cf.ac.uk.btrouter.service;
 
-import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.dto.OrderExportRow;
 import cf.ac.uk.btrouter.model.User;
-import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
 import cf.ac.uk.btrouter.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.PrintWriter;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+// A user's own data (GDPR export): their profile, then every order placed with their email.
+// Orders are streamed from one joined query, so the cost does not grow with a query per order.
 @Service
 public class DataExportService {
 
+    public enum Format {
+        CSV,
+        JSON
+    }
+
+    private static final String[] USER_COLUMNS = {
+            "Email", "First Name", "Last Name", "Phone Number", "Business Type", "VAT Number", "Billing Address",
+            "Two Factor Auth", "Marketing Emails", "Order Updates", "Billing Notifications"
+    };
+
+    private static final String[] ORDER_COLUMNS = {
+            "Reference Number", "Router Model", "Customer Name", "Num Routers", "Site Name", "Site Address",
+            "Postcode", "Primary Email", "Secondary Email", "Phone", "Contact Name", "Priority Level", "Order Date"
+    };
+
     private final UserRepository userRepository;
-    private final OrderRepository orderRepository;
+    private final OrderExportRepository orderExportRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter orderWriter;
 
     @Autowired
-    public DataExportService(UserRepository userRepository, OrderRepository orderRepository) {
+    public DataExportService(UserRepository userRepository, OrderExportRepository orderExportRepository,
+                             ObjectMapper objectMapper) {
         this.userRepository = userRepository;
-        this.orderRepository = orderRepository;
+        this.orderExportRepository = orderExportRepository;
+        this.objectMapper = objectMapper;
+        this.orderWriter = objectMapper.writerFor(OrderExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
-    public void exportUserData(String email, PrintWriter writer) {
-        // Export user profile
+    // The user is loaded before anything is written, so an unknown user fails before the response starts
+    public void exportUserData(String email, OutputStream out, Format format) throws IOException {
         User user = userRepository.findByEmail(email)
             .orElseThrow(() -> new RuntimeException("User not found"));
 
-        writer.println("=== USER DETAILS ===");
-        writer.println("Email,First Name,Last Name,Phone Number,Business Type,VAT Number,Billing Address,Two Factor Auth,Marketing Emails,Order Updates,Billing Notifications");
-        writer.printf("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",%s,%s,%s,%s\n\n",
-            user.getEmail(),
-            user.getFirstName(),
-            user.getLastName(),
-            user.getPhoneNumber(),
-            user.getBusinessType(),
-            user.getVatNumber(),
-            user.getBillingAddress(),
-            user.isTwoFactorAuth(),
-            user.isMarketingEmails(),
-            user.isOrderUpdates(),
-            user.isBillingNotifications()
-        );
+        if (format == Format.JSON) {
+            writeJson(user, out);
+        } else {
+            writeCsv(user, out);
+        }
+    }
 
-        // Export orders
-        List<Order> orders = orderRepository.findOrdersByEmail(email);
+    private void writeCsv(User user, OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeLine("=== USER DETAILS ===");
+        csv.writeRow(USER_COLUMNS);
+        Map<String, Object> profile = profile(user);
+        csv.writeRow(profile.values().stream().map(value -> value != null ? value.toString() : null)
+                .toArray(String[]::new));
+        csv.writeLine("");
 
-        writer.println("=== ORDER HISTORY ===");
-        writer.println("Reference Number,Router Model,Customer Name,Num Routers,Site Name,Site Address,Postcode,Primary Email,Secondary Email,Phone,Contact Name,Priority Level,Order Date");
+        csv.writeLine("=== ORDER HISTORY ===");
+        csv.writeRow(ORDER_COLUMNS);
+        try {
+            orderExportRepository.streamByEmail(user.getEmail(), order -> {
+                try {
+                    csv.writeRow(
+                            order.referenceNumber(),
+                            order.routerName(),
+                            order.customerName(),
+                            order.numRouters() != null ? order.numRouters().toString() : null,
+                            order.siteName(),
+                            order.siteAddress(),
+                            order.sitePostcode(),
+                            order.sitePrimaryEmail(),
+                            order.siteSecondaryEmail(),
+                            order.sitePhoneNumber(),
+                            order.siteContactName(),
+                            order.priorityLevel(),
+                            order.orderDate() != null ? order.orderDate().toString() : null);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        csv.flush();
+    }
 
-        for (Order order : orders) {
-            writer.printf("\"%s\",\"%s\",\"%s\",%d,\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"\n",
-                order.getReferenceNumber(),
-                order.getRouterModel(),
-                order.getCustomer().getCustomerName(),
-                order.getNumberOfRouters(),
-                order.getSiteName(),
-                order.getAddress(),
-                order.getPostcode(),
-                order.getEmail(),
-                order.getSiteSecondaryEmail(),
-                order.getSitePhoneNumber(),
-                order.getSiteContactName(),
-                order.getPriorityLevel(),
-                order.getOrderDate()
-            );
+    // {"user": {...}, "orders": [...]} with the orders array written as rows arrive
+    private void writeJson(User user, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeFieldName("user");
+            objectMapper.writeValue(generator, profile(user));
+            generator.writeArrayFieldStart("orders");
+            orderExportRepository.streamByEmail(user.getEmail(), order -> {
+                try {
+                    orderWriter.writeValue(generator, order);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
+
+    // Only the profile fields a user can see and change; never credentials or secrets
+    private static Map<String, Object> profile(User user) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("email", user.getEmail());
+        profile.put("firstName", user.getFirstName());
+        profile.put("lastName", user.getLastName());
+        profile.put("phoneNumber", user.getPhoneNumber());
+        profile.put("businessType", user.getBusinessType());
+        profile.put("vatNumber", user.getVatNumber());
+        profile.put("billingAddress", user.getBillingAddress());
+        profile.put("twoFactorAuth", user.isTwoFactorAuth());
+        profile.put("marketingEmails", user.isMarketingEmails());
+        profile.put("orderUpdates", user.isOrderUpdates());
+        profile.put("billingNotifications", user.isBillingNotifications());
+        return profile;
+    }
 }
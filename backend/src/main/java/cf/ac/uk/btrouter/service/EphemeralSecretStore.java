@@ -0,0 +1,34 @@
+package cf.ac.uk.btrouter.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+
+// Short-lived secrets (2FA codes, password reset tokens) kept off the users table
+public interface EphemeralSecretStore {
+
+    // Store a value under the key until the TTL elapses, replacing any previous value
+    void put(String key, String value, Duration ttl);
+
+    // Look up a value that has not yet expired
+    Optional<String> get(String key);
+
+    void remove(String key);
+
+    // Drop expired entries and return how many were removed
+    int purgeExpired();
+
+    // Secrets are only ever stored and looked up by their SHA-256 digest
+    static String hash(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(secret.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
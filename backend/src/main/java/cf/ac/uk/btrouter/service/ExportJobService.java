@@ -0,0 +1,273 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.dto.ExportJobStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Spreadsheet exports generated in the background, so a big export no longer holds a request thread
+// (or runs into the proxy timeout). Finished files are kept in a job directory until they expire.
+// Jobs live in memory: a restart forgets them, and clients submit again.
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    private static final String PARTIAL_SUFFIX = ".part";
+    // Only files named like our jobs are ever swept, in case the directory is shared
+    private static final Pattern JOB_FILE = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}(\\" + PARTIAL_SUFFIX + ")?");
+
+    public enum Type {
+        ORDERS("orders.xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+        ORDERS_BY_CUSTOMER_SHEET("orders.xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+        CUSTOMER_BUNDLE("orders-by-customer.zip", "application/zip");
+
+        private final String fileName;
+        private final String contentType;
+
+        Type(String fileName, String contentType) {
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public String fileName() {
+            return fileName;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    // Thrown when the queue of waiting jobs is full
+    public static class JobQueueFullException extends RuntimeException {
+        public JobQueueFullException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class ExportJob {
+        private final String id;
+        private final Type type;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile Status status = Status.QUEUED;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private volatile Path file;
+
+        private ExportJob(String id, Type type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public ExportJobStatus toStatus() {
+            return new ExportJobStatus(id, type.name(), status.name(), submittedAt, finishedAt, error);
+        }
+    }
+
+    private final SpreadsheetGenerationService spreadsheetService;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // The queued or running job per type; identical requests while it runs get the same job
+    private final Map<Type, ExportJob> activeJobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final Path directory;
+    private final Duration ttl;
+
+    public ExportJobService(SpreadsheetGenerationService spreadsheetService,
+                            @Value("${spreadsheet.jobs.threads:2}") int threads,
+                            @Value("${spreadsheet.jobs.queue:20}") int queueSize,
+                            @Value("${spreadsheet.jobs.dir:${java.io.tmpdir}/btrouter-exports}") String directory,
+                            @Value("${spreadsheet.jobs.ttl-ms:3600000}") long ttlMs) throws IOException {
+        this.spreadsheetService = spreadsheetService;
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.ttl = Duration.ofMillis(ttlMs);
+        // Partial files left by a crash or kill can never be completed: no job survives a restart
+        removePartialFiles();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "export-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // A job is visible by id before anyone can join it, so a joiner never polls an unknown id. One the
+    // queue rejects stays visible as FAILED for whoever joined it in the meantime.
+    public ExportJob submit(Type type) {
+        boolean[] created = {false};
+        ExportJob job = activeJobs.computeIfAbsent(type, key -> {
+            created[0] = true;
+            ExportJob newJob = new ExportJob(UUID.randomUUID().toString(), key);
+            jobs.put(newJob.id, newJob);
+            return newJob;
+        });
+        if (!created[0]) {
+            logger.debug("Export {} joined running job {}", type, job.id);
+            return job;
+        }
+
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.error = "Export queue full";
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            activeJobs.remove(type, job);
+            throw new JobQueueFullException("Too many exports waiting, try again later");
+        }
+        logger.info("Export job {} queued for {}", job.id, type);
+        return job;
+    }
+
+    public Optional<ExportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // Finished jobs and their files are removed once they are older than the TTL. The directory is
+    // swept too, by modification time, for files no job refers to any more (e.g. from before a restart)
+    @Scheduled(fixedDelayString = "${spreadsheet.jobs.cleanup-ms:60000}")
+    public void removeExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(cutoff)) {
+                return false;
+            }
+            deleteFile(job);
+            logger.debug("Export job {} expired", job.id);
+            return true;
+        });
+
+        FileTime fileCutoff = FileTime.fromMillis(System.currentTimeMillis() - ttl.toMillis());
+        for (Path file : jobFiles()) {
+            if (activeJobs.values().stream().anyMatch(job -> file.getFileName().toString().startsWith(job.id))) {
+                continue;
+            }
+            try {
+                if (Files.getLastModifiedTime(file).compareTo(fileCutoff) < 0 && Files.deleteIfExists(file)) {
+                    logger.debug("Removed stale export file {}", file);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not remove stale export file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.values().forEach(this::deleteFile);
+    }
+
+    private void run(ExportJob job) {
+        job.status = Status.RUNNING;
+        long startTime = System.currentTimeMillis();
+        // Written under a temporary name so a download never sees a partial file
+        Path partial = directory.resolve(job.id + PARTIAL_SUFFIX);
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                switch (job.type) {
+                    case ORDERS -> spreadsheetService.write(out, false);
+                    case ORDERS_BY_CUSTOMER_SHEET -> spreadsheetService.write(out, true);
+                    case CUSTOMER_BUNDLE -> spreadsheetService.writeCustomerBundle(out);
+                }
+            }
+            job.file = Files.move(partial, directory.resolve(job.id), StandardCopyOption.ATOMIC_MOVE);
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.DONE;
+            logger.info("Export job {} finished in {} ms", job.id, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            logger.error("Export job {} failed: {}", job.id, e.getMessage(), e);
+            job.error = "Export failed";
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Removed with the job directory at the latest
+            }
+        } finally {
+            activeJobs.remove(job.type, job);
+        }
+    }
+
+    private void removePartialFiles() throws IOException {
+        for (Path file : jobFiles()) {
+            if (file.getFileName().toString().endsWith(PARTIAL_SUFFIX)) {
+                Files.deleteIfExists(file);
+                logger.info("Removed partial export file {}", file);
+            }
+        }
+    }
+
+    private List<Path> jobFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> JOB_FILE.matcher(file.getFileName().toString()).matches())
+                    .filter(Files::isRegularFile)
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Could not list export directory {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void deleteFile(ExportJob job) {
+        if (job.file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(job.file);
+        } catch (IOException e) {
+            logger.warn("Could not delete export file {}: {}", job.file, e.getMessage());
+        }
+    }
+}
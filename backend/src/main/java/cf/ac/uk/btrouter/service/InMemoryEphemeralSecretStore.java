@@ -0,0 +1,64 @@
+package cf.ac.uk.btrouter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@ConditionalOnProperty(name = "secrets.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryEphemeralSecretStore implements EphemeralSecretStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryEphemeralSecretStore.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value());
+    }
+
+    @Override
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    // Sweep expired entries so abandoned codes and tokens do not accumulate
+    @Override
+    @Scheduled(fixedDelayString = "${secrets.sweep-interval-ms:60000}")
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int removed = Math.max(0, before - entries.size());
+        if (removed > 0) {
+            logger.debug("Purged {} expired ephemeral secrets", removed);
+        }
+        return removed;
+    }
+
+    private record Entry(String value, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return expiresAtMillis <= now;
+        }
+    }
+}
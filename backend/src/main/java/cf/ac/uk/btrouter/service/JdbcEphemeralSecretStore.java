@@ -0,0 +1,61 @@
+package cf.ac.uk.btrouter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+// Shared store for deployments running more than one node, backed by the ephemeral_secrets table
+@Service
+@ConditionalOnProperty(name = "secrets.store", havingValue = "jdbc")
+public class JdbcEphemeralSecretStore implements EphemeralSecretStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcEphemeralSecretStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcEphemeralSecretStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        Timestamp expiresAt = new Timestamp(System.currentTimeMillis() + ttl.toMillis());
+        jdbcTemplate.update(
+                "INSERT INTO ephemeral_secrets (secret_key, secret_value, expires_at) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE secret_value = VALUES(secret_value), expires_at = VALUES(expires_at)",
+                key, value, expiresAt);
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        List<String> values = jdbcTemplate.queryForList(
+                "SELECT secret_value FROM ephemeral_secrets WHERE secret_key = ? AND expires_at > ?",
+                String.class, key, new Timestamp(System.currentTimeMillis()));
+        return values.stream().findFirst();
+    }
+
+    @Override
+    public void remove(String key) {
+        jdbcTemplate.update("DELETE FROM ephemeral_secrets WHERE secret_key = ?", key);
+    }
+
+    // Range delete on the expires_at index; safe to run on every node
+    @Override
+    @Scheduled(fixedDelayString = "${secrets.sweep-interval-ms:60000}")
+    public int purgeExpired() {
+        int removed = jdbcTemplate.update("DELETE FROM ephemeral_secrets WHERE expires_at <= ?",
+                new Timestamp(System.currentTimeMillis()));
+        if (removed > 0) {
+            logger.debug("Purged {} expired ephemeral secrets", removed);
+        }
+        return removed;
+    }
+}
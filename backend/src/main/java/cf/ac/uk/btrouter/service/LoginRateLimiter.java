@@ -0,0 +1,91 @@
+package cf.ac.uk.btrouter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+@Service
+public class LoginRateLimiter {
+
+    private static final Duration REFILL_PERIOD = Duration.ofMinutes(15);
+
+    private final int maxAttemptsPerAccount;
+    private final int maxAttemptsPerIp;
+
+    // Buckets keyed by "ip:<address>" or "account:<email>"; an idle bucket is full again after
+    // one refill period, so evicting it then loses nothing
+    private final Cache<String, Bucket> buckets;
+
+    private final Counter accountRejections;
+    private final Counter ipRejections;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${login.rate-limit.max-keys:100000}") long maxKeys,
+                            @Value("${login.rate-limit.account-attempts:5}") int maxAttemptsPerAccount,
+                            @Value("${login.rate-limit.ip-attempts:20}") int maxAttemptsPerIp) {
+        this.maxAttemptsPerAccount = maxAttemptsPerAccount;
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(REFILL_PERIOD)
+                .build();
+
+        Gauge.builder("auth.login.rate_limit.buckets", buckets, Cache::estimatedSize)
+                .description("Live login rate-limit buckets")
+                .register(meterRegistry);
+        this.accountRejections = Counter.builder("auth.login.rate_limit.rejections")
+                .tag("scope", "account")
+                .register(meterRegistry);
+        this.ipRejections = Counter.builder("auth.login.rate_limit.rejections")
+                .tag("scope", "ip")
+                .register(meterRegistry);
+    }
+
+    // Take one attempt from both the client IP and the account bucket; the returned probe is
+    // from whichever bucket refused, or the account bucket if both allowed the attempt
+    public ConsumptionProbe tryConsume(String clientIp, String account) {
+        ConsumptionProbe ipProbe = bucket("ip:" + (clientIp != null ? clientIp : ""), maxAttemptsPerIp)
+                .tryConsumeAndReturnRemaining(1);
+        if (!ipProbe.isConsumed()) {
+            ipRejections.increment();
+            return ipProbe;
+        }
+
+        ConsumptionProbe accountProbe = bucket("account:" + normalise(account), maxAttemptsPerAccount)
+                .tryConsumeAndReturnRemaining(1);
+        if (!accountProbe.isConsumed()) {
+            accountRejections.increment();
+        }
+        return accountProbe;
+    }
+
+    public long liveBuckets() {
+        return buckets.estimatedSize();
+    }
+
+    // Run pending evictions now rather than on the next cache access
+    public void cleanUp() {
+        buckets.cleanUp();
+    }
+
+    private Bucket bucket(String key, int capacity) {
+        return buckets.get(key, k -> Bucket.builder()
+                .addLimit(Bandwidth.classic(capacity, Refill.intervally(capacity, REFILL_PERIOD)))
+                .build());
+    }
+
+    private static String normalise(String account) {
+        return account == null ? "" : account.trim().toLowerCase(Locale.ROOT);
+    }
+}
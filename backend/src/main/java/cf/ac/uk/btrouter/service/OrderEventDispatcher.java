@@ -0,0 +1,51 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+
+// Carries out the side effects of one outbox event. Any exception leaves the event to be retried,
+// so delivery is at-least-once
+@Service
+public class OrderEventDispatcher {
+
+    private final OrderRepository orderRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final EmailService emailService;
+    private final NewsService newsService;
+
+    public OrderEventDispatcher(OrderRepository orderRepository, OutboxEventRepository outboxEventRepository,
+                                EmailService emailService, NewsService newsService) {
+        this.orderRepository = orderRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.emailService = emailService;
+        this.newsService = newsService;
+    }
+
+    public void dispatch(OutboxEvent event) {
+        // The order is read at delivery time, so e.g. a modification email shows the saved values
+        Order order = orderRepository.findById(event.getRouterOrderID())
+                .orElseThrow(() -> new IllegalStateException("Order not found with ID: " + event.getRouterOrderID()));
+        String ref = event.getReferenceNumber();
+
+        switch (event.getType()) {
+            case ORDER_CREATED -> emailService.sendOrderConfirmationEmail(order.getSitePrimaryEmail(), ref, order);
+            case STATUS_CHANGED -> {
+                // Post first and record it, so a retry after a mail failure does not post twice
+                if (event.isAnnounce()) {
+                    newsService.createPost(
+                            "Router Request Status Updated",
+                            "Your router request (" + ref + ") has been updated to **" + event.getStatus() + "**.",
+                            "System Notification"
+                    );
+                    outboxEventRepository.markAnnounced(event.getId());
+                }
+                emailService.sendOrderStatusUpdateEmail(order.getSitePrimaryEmail(), ref, event.getStatus());
+            }
+            case CANCELLED -> emailService.sendOrderCancellationEmail(order.getSitePrimaryEmail(), ref);
+            case MODIFIED -> emailService.sendOrderModificationEmail(order.getSitePrimaryEmail(), ref, order);
+        }
+    }
+}
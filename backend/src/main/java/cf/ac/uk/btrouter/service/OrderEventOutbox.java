@@ -0,0 +1,39 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// Records order events alongside the change itself: MANDATORY so an event can never commit
+// without its change, or the change without its event
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class OrderEventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    public OrderEventOutbox(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    public void orderCreated(Long orderId, String referenceNumber) {
+        outboxEventRepository.save(new OutboxEvent(OutboxEvent.Type.ORDER_CREATED, orderId, referenceNumber));
+    }
+
+    public void statusChanged(Long orderId, String referenceNumber, String newStatus, boolean announce) {
+        OutboxEvent event = new OutboxEvent(OutboxEvent.Type.STATUS_CHANGED, orderId, referenceNumber);
+        event.setStatus(newStatus);
+        event.setAnnounce(announce);
+        outboxEventRepository.save(event);
+    }
+
+    public void cancelled(Long orderId, String referenceNumber) {
+        outboxEventRepository.save(new OutboxEvent(OutboxEvent.Type.CANCELLED, orderId, referenceNumber));
+    }
+
+    public void modified(Long orderId, String referenceNumber) {
+        outboxEventRepository.save(new OutboxEvent(OutboxEvent.Type.MODIFIED, orderId, referenceNumber));
+    }
+}
@@ -1,20 +1,34 @@
 package cf.ac.uk.btrouter.service;
 
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.BatchOrderResult;
+import cf.ac.uk.btrouter.dto.CursorPage;
+import cf.ac.uk.btrouter.dto.OrderCursor;
+import cf.ac.uk.btrouter.dto.OrderFilter;
 import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.model.OrderTracking;
 import cf.ac.uk.btrouter.model.Customer;
 import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.model.Router;
 import cf.ac.uk.btrouter.model.RouterPreset;
-import cf.ac.uk.btrouter.repository.CustomerRepository;
+import cf.ac.uk.btrouter.repository.OrderBatchRepository;
 import cf.ac.uk.btrouter.repository.OrderRepository;
-import cf.ac.uk.btrouter.repository.RouterPresetRepository;
-import cf.ac.uk.btrouter.repository.RouterRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
@@ -26,41 +40,137 @@ public class OrderService {
     private OrderTrackingService orderTrackingService;
 
     @Autowired
-    private RouterRepository routerRepository;
+    private ReferenceDataCache referenceDataCache;
 
     @Autowired
-    private CustomerRepository customerRepository;
+    private OrderBatchRepository orderBatchRepository;
 
     @Autowired
-    private RouterPresetRepository routerPresetRepository;
+    private ReferenceNumberGenerator referenceNumberGenerator;
+
+    @Autowired
+    private AdminOrderFeed adminOrderFeed;
 
     public OrderService(OrderRepository orderRepository) {
         this.orderRepository = orderRepository;
     }
 
     public Order saveOrder(OrderRequest orderRequest) {
-        Order order = new Order();
-
-        // Generate unique reference number
-        order.setReferenceNumber("BT-" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase());
-
         // Set customer from ID
-        Customer customer = customerRepository.findById(orderRequest.getCustomerId())
+        Customer customer = referenceDataCache.getCustomer(orderRequest.getCustomerId())
             .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
-        order.setCustomer(customer);
 
         // Set router from ID
-        Router router = routerRepository.findById(orderRequest.getRouterId())
+        Router router = referenceDataCache.getRouter(orderRequest.getRouterId())
             .orElseThrow(() -> new IllegalArgumentException("Router not found"));
-        order.setRouter(router);
 
         // Set optional router preset
+        RouterPreset preset = null;
         if (orderRequest.getRouterPresetId() != null) {
-            RouterPreset preset = routerPresetRepository.findById(orderRequest.getRouterPresetId())
+            preset = referenceDataCache.getPreset(orderRequest.getRouterPresetId())
                 .orElse(null);
-            order.setRouterPreset(preset);
         }
 
+        Order savedOrder = orderRepository.save(buildOrder(orderRequest, customer, router, preset));
+        adminOrderFeed.orderCreated(savedOrder.getRouterOrderID());
+        return savedOrder;
+    }
+
+    // Save the order and its tracking row together, so an order never exists without tracking and the
+    // client does not need a second call to /api/order-tracking/create
+    @Transactional
+    public OrderWithTracking saveOrderWithTracking(OrderRequest orderRequest) {
+        Order order = saveOrder(orderRequest);
+        OrderTracking tracking = orderTrackingService.createOrderTracking(order);
+        return new OrderWithTracking(order, tracking);
+    }
+
+    public List<BatchOrderResult> saveOrders(List<OrderRequest> orderRequests) {
+        return saveOrders(orderRequests, false);
+    }
+
+    // Create many orders in one go. Reference data is resolved with at most one query per type and the valid
+    // orders are inserted in a single JDBC batch; invalid items are reported rather than failing the rest.
+    // withTracking also creates each order's tracking row, history entry and ORDER_CREATED event in the same
+    // transaction, as saveOrderWithTracking does; those go through JPA one order at a time.
+    @Transactional
+    public List<BatchOrderResult> saveOrders(List<OrderRequest> orderRequests, boolean withTracking) {
+        Map<Long, Customer> customers = referenceDataCache.getCustomers(ids(orderRequests, OrderRequest::getCustomerId));
+        Map<Long, Router> routers = referenceDataCache.getRouters(ids(orderRequests, OrderRequest::getRouterId));
+        Map<Long, RouterPreset> presets = referenceDataCache.getPresets(ids(orderRequests, OrderRequest::getRouterPresetId));
+
+        BatchOrderResult[] results = new BatchOrderResult[orderRequests.size()];
+        Map<Integer, Order> valid = new HashMap<>();
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderRequest request = orderRequests.get(i);
+            String error = validateBatchItem(request, customers, routers);
+            if (error != null) {
+                results[i] = BatchOrderResult.failed(i, error);
+                continue;
+            }
+            valid.put(i, buildOrder(request, customers.get(request.getCustomerId()),
+                    routers.get(request.getRouterId()), presets.get(request.getRouterPresetId())));
+        }
+
+        List<Order> toInsert = new ArrayList<>(valid.values());
+        orderBatchRepository.insertAll(toInsert);
+        adminOrderFeed.ordersCreated(toInsert.stream().map(Order::getRouterOrderID).toList());
+        valid.forEach((i, order) -> {
+            String trackingReference = withTracking
+                    ? orderTrackingService.createOrderTracking(order).getReferenceNumber()
+                    : null;
+            results[i] = BatchOrderResult.created(i, order.getRouterOrderID(), order.getReferenceNumber(), trackingReference);
+        });
+        return List.of(results);
+    }
+
+    private static Set<Long> ids(List<OrderRequest> orderRequests, Function<OrderRequest, Long> id) {
+        return orderRequests.stream().map(id).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    // Checks the single-order path leaves to lookups and NOT NULL constraints, done up front so
+    // one bad item cannot abort the whole batch insert
+    private static String validateBatchItem(OrderRequest request, Map<Long, Customer> customers, Map<Long, Router> routers) {
+        if (request.getCustomerId() == null || !customers.containsKey(request.getCustomerId())) {
+            return "Customer not found";
+        }
+        if (request.getRouterId() == null || !routers.containsKey(request.getRouterId())) {
+            return "Router not found";
+        }
+        try {
+            RouterPreset.VlanType.valueOf(String.valueOf(request.getVlans()));
+        } catch (IllegalArgumentException e) {
+            return "Invalid VLAN type: " + request.getVlans();
+        }
+
+        Map<String, String> required = new LinkedHashMap<>();
+        required.put("primaryOutsideConnections", request.getPrimaryOutsideConnections());
+        required.put("insideConnections", request.getInsideConnections());
+        required.put("siteName", request.getSiteName());
+        required.put("siteAddress", request.getSiteAddress());
+        required.put("sitePostcode", request.getSitePostcode());
+        required.put("sitePhoneNumber", request.getSitePhoneNumber());
+        required.put("siteContactName", request.getSiteContactName());
+        required.put("priorityLevel", request.getPriorityLevel());
+        for (Map.Entry<String, String> field : required.entrySet()) {
+            if (field.getValue() == null || field.getValue().isBlank()) {
+                return field.getKey() + " is required";
+            }
+        }
+        return null;
+    }
+
+    // Map a request onto a new, unsaved order; shared by the single and batch paths
+    private Order buildOrder(OrderRequest orderRequest, Customer customer, Router router, RouterPreset preset) {
+        Order order = new Order();
+
+        // Generate unique reference number
+        order.setReferenceNumber(referenceNumberGenerator.next());
+
+        order.setCustomer(customer);
+        order.setRouter(router);
+        order.setRouterPreset(preset);
+
         // Outside connections
         order.setPrimaryOutsideConnections(orderRequest.getPrimaryOutsideConnections());
         order.setSecondaryOutsideConnections(orderRequest.getSecondaryOutsideConnections());
@@ -96,32 +206,51 @@ public class OrderService {
         // Optional flag
         order.setAddAnotherRouter(orderRequest.getAddAnotherRouter() != null && orderRequest.getAddAnotherRouter());
 
-        return orderRepository.save(order);
+        return order;
     }
 
     public List<Order> getOrdersByEmail(String email) {
         return orderRepository.findOrdersByEmail(email);
     }
 
+    public List<OrderSummaryDTO> getOrderSummariesByEmail(String email) {
+        return orderRepository.findOrderSummariesByEmail(email);
+    }
+
     public Optional<Order> getOrderById(Long orderId, String userEmail) {
         return Optional.ofNullable(orderRepository.findOrderByIdAndEmail(orderId, userEmail));
     }
 
+    // Order, tracking and the outbox event commit together; the email and news post follow from the relay
+    @Transactional
     public Order updateOrderStatus(Long orderId, String newStatus) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         order.setStatus(newStatus);
         orderRepository.save(order);
-        orderTrackingService.updateOrderStatusByOrderId(orderId, newStatus);
+        orderTrackingService.updateOrderStatusByOrderId(orderId, newStatus, true);
         return order;
     }
 
-    public List<Order> getPendingRequests() {
-        return orderRepository.findByStatus("Pending");
+    public List<AdminOrderDTO> getPendingRequests() {
+        return orderRepository.findAdminOrdersByStatus("Pending");
+    }
+
+    public List<AdminOrderDTO> getAllRequests() {
+        return orderRepository.findAllAdminOrders();
     }
 
-    public List<Order> getAllRequests() {
-        return orderRepository.findAll();
+    // One page of the admin listing; fetches one extra row to tell whether another page follows
+    public CursorPage<AdminOrderDTO> getOrderPage(OrderFilter filter, String cursor, boolean ascending, int size) {
+        OrderCursor after = (cursor != null && !cursor.isEmpty()) ? OrderCursor.decode(cursor) : null;
+        List<AdminOrderDTO> orders = orderRepository.findPage(filter, after, ascending, size + 1);
+        if (orders.size() <= size) {
+            return new CursorPage<>(orders, null);
+        }
+
+        List<AdminOrderDTO> page = orders.subList(0, size);
+        AdminOrderDTO last = page.get(size - 1);
+        return new CursorPage<>(page, new OrderCursor(last.getOrderDate(), last.getId()).encode());
     }
 
     public Order reorderRouter(Long orderId, String userEmail) {
@@ -135,7 +264,7 @@ public class OrderService {
             }
 
             Order newOrder = new Order();
-            newOrder.setReferenceNumber("BT-" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase());
+            newOrder.setReferenceNumber(referenceNumberGenerator.next());
 
             // Reuse linked entities
             newOrder.setCustomer(oldOrder.getCustomer());
@@ -172,7 +301,9 @@ public class OrderService {
             newOrder.setIpAddress(oldOrder.getIpAddress());
             newOrder.setConfigurationDetails(oldOrder.getConfigurationDetails());
 
-            return orderRepository.save(newOrder);
+            Order savedOrder = orderRepository.save(newOrder);
+            adminOrderFeed.orderCreated(savedOrder.getRouterOrderID());
+            return savedOrder;
         }
 
         throw new IllegalArgumentException("Order with ID " + orderId + " not found.");
@@ -0,0 +1,85 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.dto.StageDurationStats;
+import cf.ac.uk.btrouter.model.OrderStatusEvent;
+import cf.ac.uk.btrouter.model.OrderTracking;
+import cf.ac.uk.btrouter.repository.OrderStatusEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+// Append-only status history behind the order timeline and stage statistics
+@Service
+public class OrderStatusHistoryService {
+
+    private final OrderStatusEventRepository orderStatusEventRepository;
+    private final Duration maxWindow;
+
+    public OrderStatusHistoryService(OrderStatusEventRepository orderStatusEventRepository,
+                                     @Value("${order-history.stats.max-window-days:92}") long maxWindowDays) {
+        this.orderStatusEventRepository = orderStatusEventRepository;
+        this.maxWindow = Duration.ofDays(maxWindowDays);
+    }
+
+    // MANDATORY so a transition can never commit without its history row, or the other way round.
+    // Call before changing the tracking status; no-op updates are not recorded.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransition(OrderTracking tracking, String fromStatus, String toStatus) {
+        if (Objects.equals(fromStatus, toStatus)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Long durationMs = null;
+        if (fromStatus != null) {
+            // Orders tracked before the history existed fall back to when tracking started
+            LocalDateTime since = orderStatusEventRepository
+                    .findLatestOccurredAt(tracking.getRouterOrderID(), PageRequest.of(0, 1)).stream()
+                    .findFirst()
+                    .orElse(tracking.getCreatedAt());
+            if (since != null) {
+                durationMs = Math.max(0, Duration.between(since, now).toMillis());
+            }
+        }
+        orderStatusEventRepository.save(new OrderStatusEvent(tracking.getRouterOrderID(),
+                tracking.getReferenceNumber(), fromStatus, toStatus, now, durationMs));
+    }
+
+    public List<OrderStatusEvent> getTimeline(Long orderId) {
+        return orderStatusEventRepository.findByRouterOrderIDOrderByOccurredAtAscIdAsc(orderId);
+    }
+
+    // Reads only the index range for the status and window, which is capped so a request cannot scan the table
+    public StageDurationStats getStageDurations(String status, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxWindow) > 0) {
+            throw new IllegalArgumentException("Window must not exceed " + maxWindow.toDays() + " days");
+        }
+
+        long entered = orderStatusEventRepository.countEntered(status, from, to);
+        long[] durations = orderStatusEventRepository.findStageDurations(status, from, to).stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        return new StageDurationStats(status, from, to, entered, durations.length,
+                percentile(durations, 50), percentile(durations, 90), percentile(durations, 95),
+                percentile(durations, 99), durations.length == 0 ? null : durations[durations.length - 1]);
+    }
+
+    // Nearest-rank percentile of sorted values
+    static Long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
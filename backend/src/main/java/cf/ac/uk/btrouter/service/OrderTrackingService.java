@@ -1,15 +1,30 @@
 package cf.ac.uk.btrouter.service;
 
+import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
 import cf.ac.uk.btrouter.model.OrderTracking;
 import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.repository.OrderTrackingRepository;
 import cf.ac.uk.btrouter.repository.OrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.concurrent.CompletableFuture;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
 
 @Service
 public class OrderTrackingService {
@@ -18,17 +33,42 @@ public class OrderTrackingService {
 
     private final OrderTrackingRepository orderTrackingRepository;
     private final OrderRepository orderRepository;
-    private final EmailService emailService;
+    private final OrderEventOutbox orderEventOutbox;
+    private final TrackingUpdateBroadcaster trackingUpdates;
+    private final AdminOrderFeed adminOrderFeed;
+    private final OrderStatusHistoryService orderStatusHistory;
+
+    // Public tracking views by upper-cased reference; evicted after commit by every change below,
+    // the TTL covers changes made on other nodes
+    private final Cache<String, TrackingSnapshot> trackingViews;
 
     @Autowired
     public OrderTrackingService(
             OrderTrackingRepository orderTrackingRepository,
             OrderRepository orderRepository,
-            EmailService emailService) {
+            OrderEventOutbox orderEventOutbox,
+            TrackingUpdateBroadcaster trackingUpdates,
+            AdminOrderFeed adminOrderFeed,
+            OrderStatusHistoryService orderStatusHistory,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${tracking.cache.ttl-ms:300000}") long cacheTtlMs) {
         this.orderTrackingRepository = orderTrackingRepository;
         this.orderRepository = orderRepository;
-        this.emailService = emailService;
-        logger.info("OrderTrackingService initialized with repositories and email service");
+        this.orderEventOutbox = orderEventOutbox;
+        this.trackingUpdates = trackingUpdates;
+        this.adminOrderFeed = adminOrderFeed;
+        this.orderStatusHistory = orderStatusHistory;
+        this.trackingViews = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .recordStats()
+                .<String, TrackingSnapshot>build(), "tracking.views");
+        logger.info("OrderTrackingService initialized with repositories and order event outbox");
+    }
+
+    // A tracking view and the ETag of its current content
+    public record TrackingSnapshot(OrderTrackingDTO view, String etag) {
     }
 
     // Create new tracking entry for an order
@@ -43,6 +83,14 @@ public class OrderTrackingService {
                     return new RuntimeException("Order not found with ID: " + orderId);
                 });
 
+        return createOrderTracking(order);
+    }
+
+    // Create tracking for an order the caller already holds, e.g. one saved in the same transaction
+    @Transactional
+    public OrderTracking createOrderTracking(Order order) {
+        Long orderId = order.getRouterOrderID();
+
         // Create tracking entity
         OrderTracking tracking = new OrderTracking();
         tracking.setRouterOrderID(orderId);
@@ -53,19 +101,12 @@ public class OrderTrackingService {
 
         // Save tracking information
         OrderTracking savedTracking = orderTrackingRepository.save(tracking);
+        orderStatusHistory.recordTransition(savedTracking, null, savedTracking.getStatus());
         logger.info("Created tracking with reference number: {}", savedTracking.getReferenceNumber());
+        adminOrderFeed.updated(orderId);
 
-        // Send confirmation email
-        try {
-            emailService.sendOrderConfirmationEmail(
-                    order.getSitePrimaryEmail(),
-                    savedTracking.getReferenceNumber(),
-                    order
-            );
-            logger.info("Sent confirmation email to: {}", order.getSitePrimaryEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send confirmation email for order ID: {}", orderId, e);
-        }
+        // Confirmation email goes out through the outbox once this commits
+        orderEventOutbox.orderCreated(orderId, savedTracking.getReferenceNumber());
 
         return savedTracking;
     }
@@ -80,43 +121,38 @@ public class OrderTrackingService {
                 });
     }
 
+    // Public tracking view, read through the cache; unknown references are not cached
+    public Optional<TrackingSnapshot> getTrackingSnapshot(String referenceNumber) {
+        return Optional.ofNullable(trackingViews.get(referenceKey(referenceNumber), key ->
+                orderTrackingRepository.findTrackingView(referenceNumber)
+                        .map(view -> new TrackingSnapshot(view, etag(view)))
+                        .orElse(null)));
+    }
+
     // Update order status and permissions based on reference number
     @Transactional
     public OrderTracking updateOrderStatus(String referenceNumber, String newStatus) {
         logger.info("Updating status for reference {} to: {}", referenceNumber, newStatus);
         
         OrderTracking tracking = getOrderTracking(referenceNumber);
+        orderStatusHistory.recordTransition(tracking, tracking.getStatus(), newStatus);
         tracking.setStatus(newStatus);
         updateModificationPermissions(tracking, newStatus);
 
         OrderTracking updatedTracking = orderTrackingRepository.save(tracking);
+        trackingChanged(tracking.getReferenceNumber());
+        adminOrderFeed.statusChanged(tracking.getRouterOrderID());
         logger.info("Updated status for reference {} to: {}", referenceNumber, newStatus);
 
-        // Get the associated order
-        Order order = orderRepository.findById(tracking.getRouterOrderID())
-                .orElseThrow(() -> {
-                    logger.error("Order not found for tracking reference: {}", referenceNumber);
-                    return new RuntimeException("Order not found");
-                });
-
-        // Send status update email
-        try {
-            emailService.sendOrderStatusUpdateEmail(
-                    order.getSitePrimaryEmail(),
-                    referenceNumber,
-                    newStatus
-            );
-            logger.info("Sent status update email to: {}", order.getSitePrimaryEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send status update email for reference: {}", referenceNumber, e);
-        }
+        // Status update email goes out through the outbox once this commits
+        orderEventOutbox.statusChanged(tracking.getRouterOrderID(), tracking.getReferenceNumber(), newStatus, false);
 
         return updatedTracking;
     }
 
-    // Update order status and permissions based on order ID
+    // Update order status and permissions based on order ID; announce also publishes a news post
     @Transactional
-    public OrderTracking updateOrderStatusByOrderId(Long orderId, String newStatus) {
+    public OrderTracking updateOrderStatusByOrderId(Long orderId, String newStatus, boolean announce) {
         logger.info("Updating status for order ID {} to: {}", orderId, newStatus);
         
         OrderTracking tracking = orderTrackingRepository.findByOrderRouterOrderID(orderId)
@@ -126,32 +162,17 @@ public class OrderTrackingService {
                 });
 
         // Update status and modification permissions
+        orderStatusHistory.recordTransition(tracking, tracking.getStatus(), newStatus);
         tracking.setStatus(newStatus);
         updateModificationPermissions(tracking, newStatus);
 
         OrderTracking updatedTracking = orderTrackingRepository.save(tracking);
+        trackingChanged(tracking.getReferenceNumber());
+        adminOrderFeed.statusChanged(orderId);
         logger.info("Updated status for order ID {} to: {}", orderId, newStatus);
 
-        // Get the associated order
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> {
-                    logger.error("Order not found for ID: {}", orderId);
-                    return new RuntimeException("Order not found");
-                });
-
-        // Send status update email asynchronously
-        CompletableFuture.runAsync(() -> {
-            try {
-                emailService.sendOrderStatusUpdateEmail(
-                    order.getSitePrimaryEmail(),
-                    tracking.getReferenceNumber(),
-                    newStatus
-                );
-                logger.info("Sent status update email to: {}", order.getSitePrimaryEmail());
-            } catch (Exception e) {
-                logger.error("Failed to send status update email for order ID: {}", orderId, e);
-            }
-        });
+        // Status update email (and news post) go out through the outbox once this commits
+        orderEventOutbox.statusChanged(orderId, tracking.getReferenceNumber(), newStatus, announce);
 
         return updatedTracking;
     }
@@ -170,10 +191,12 @@ public class OrderTrackingService {
         }
 
         // Update order status and permissions
+        orderStatusHistory.recordTransition(tracking, tracking.getStatus(), "CANCELLED");
         tracking.setStatus("CANCELLED");
         tracking.setCanModify(false);
         tracking.setCanCancel(false);
         orderTrackingRepository.save(tracking);
+        trackingChanged(tracking.getReferenceNumber());
         logger.info("Order cancelled successfully for reference: {}", referenceNumber);
 
         // Get the associated order
@@ -186,17 +209,10 @@ public class OrderTrackingService {
         // update the status to CANCELLED
         order.setStatus("CANCELLED");
         orderRepository.save(order);
+        adminOrderFeed.cancelled(order.getRouterOrderID());
 
-        // Send cancellation confirmation
-        try {
-            emailService.sendOrderCancellationEmail(
-                    order.getSitePrimaryEmail(),
-                    referenceNumber
-            );
-            logger.info("Sent cancellation email to: {}", order.getSitePrimaryEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send cancellation email for reference: {}", referenceNumber, e);
-        }
+        // Cancellation confirmation goes out through the outbox once this commits
+        orderEventOutbox.cancelled(order.getRouterOrderID(), tracking.getReferenceNumber());
     }
 
     // Handle order modification
@@ -222,18 +238,48 @@ public class OrderTrackingService {
         // Update order details
         originalOrder.setNumRouters(modifiedOrder.getNumRouters());
         Order savedOrder = orderRepository.save(originalOrder);
+        trackingChanged(tracking.getReferenceNumber());
         logger.info("Order modified successfully for reference: {}", referenceNumber);
 
-        // Send modification confirmation
+        // Modification confirmation goes out through the outbox once this commits
+        orderEventOutbox.modified(savedOrder.getRouterOrderID(), tracking.getReferenceNumber());
+    }
+
+    // Evicting only before commit would let a concurrent read cache the old row again, so evict
+    // once the change is visible. Stream subscribers are told only about committed changes.
+    private void trackingChanged(String referenceNumber) {
+        String key = referenceKey(referenceNumber);
+        trackingViews.invalidate(key);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            trackingUpdates.publish(key, () -> getTrackingSnapshot(key));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                trackingViews.invalidate(key);
+                trackingUpdates.publish(key, () -> getTrackingSnapshot(key));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                trackingViews.invalidate(key);
+            }
+        });
+    }
+
+    static String referenceKey(String referenceNumber) {
+        return referenceNumber.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Strong ETag over every field the client sees
+    private static String etag(OrderTrackingDTO view) {
         try {
-            emailService.sendOrderModificationEmail(
-                    savedOrder.getSitePrimaryEmail(),
-                    referenceNumber,
-                    savedOrder
-            );
-            logger.info("Sent modification email to: {}", savedOrder.getSitePrimaryEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send modification email for reference: {}", referenceNumber, e);
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(view.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
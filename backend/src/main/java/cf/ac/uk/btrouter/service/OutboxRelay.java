@@ -0,0 +1,138 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Polls the outbox and hands due events to a small dedicated pool, so slow SMTP never holds a
+// request thread or the common ForkJoinPool. Events survive restarts in the table; a claimed event
+// whose node dies is picked up again once its lease expires.
+@Service
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderEventDispatcher dispatcher;
+    private final ThreadPoolExecutor executor;
+
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration retryBackoff;
+    private final Duration retention;
+
+    private final Counter dispatched;
+    private final Counter failed;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OrderEventDispatcher dispatcher,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.threads:4}") int threads,
+                       @Value("${outbox.queue:100}") int queueSize,
+                       @Value("${outbox.max-attempts:8}") int maxAttempts,
+                       @Value("${outbox.lease-ms:60000}") long leaseMs,
+                       @Value("${outbox.retry-backoff-ms:5000}") long retryBackoffMs,
+                       @Value("${outbox.retention-ms:604800000}") long retentionMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.dispatcher = dispatcher;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.retention = Duration.ofMillis(retentionMs);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // Only claims as many events as the queue can take, so submissions are never rejected
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "outbox-relay-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("outbox.relay.queue_depth", executor, e -> e.getQueue().size())
+                .description("Outbox events waiting for a relay thread")
+                .register(meterRegistry);
+        this.dispatched = Counter.builder("outbox.relay.events").tag("outcome", "dispatched").register(meterRegistry);
+        this.failed = Counter.builder("outbox.relay.events").tag("outcome", "failed").register(meterRegistry);
+    }
+
+    // Claim due events up to the free queue capacity and submit them; returns how many were submitted
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public int dispatchDue() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> due = outboxEventRepository.findDueIds(now, maxAttempts, PageRequest.of(0, capacity));
+        int submitted = 0;
+        for (Long id : due) {
+            if (outboxEventRepository.claim(id, now, now.plus(lease)) == 1) {
+                executor.execute(() -> deliver(id));
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    private void deliver(Long id) {
+        OutboxEvent event = outboxEventRepository.findById(id).orElse(null);
+        if (event == null || event.getDispatchedAt() != null) {
+            return;
+        }
+        try {
+            dispatcher.dispatch(event);
+            outboxEventRepository.markDispatched(id, LocalDateTime.now());
+            dispatched.increment();
+        } catch (Exception e) {
+            failed.increment();
+            int attempt = event.getAttempts() + 1;
+            // Linear backoff; after maxAttempts the event stays in the table for inspection
+            LocalDateTime retryAt = LocalDateTime.now().plus(retryBackoff.multipliedBy(attempt));
+            outboxEventRepository.markFailed(id, retryAt, truncate(String.valueOf(e.getMessage())));
+            if (attempt >= maxAttempts) {
+                logger.error("Giving up on outbox event {} ({}) after {} attempts", id, event.getType(), attempt, e);
+            } else {
+                logger.warn("Outbox event {} ({}) failed on attempt {}, retrying: {}", id, event.getType(), attempt, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.sweep-interval-ms:3600000}")
+    public int purgeDispatched() {
+        return outboxEventRepository.deleteDispatchedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    // Give in-flight deliveries a moment; anything unfinished is redelivered once its lease expires
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,110 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.model.RouterPreset;
+import cf.ac.uk.btrouter.repository.CustomerRepository;
+import cf.ac.uk.btrouter.repository.RouterPresetRepository;
+import cf.ac.uk.btrouter.repository.RouterRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Read-through cache of the catalogs every order points at. Entries are detached copies, so they
+// can be attached to a new order as-is: persisting only needs their ids for the foreign keys.
+// Writes through CustomerService, RouterService and RouterPresetService evict; the TTL bounds how
+// long another node's writes can go unseen.
+@Service
+public class ReferenceDataCache {
+
+    private final CustomerRepository customerRepository;
+    private final RouterRepository routerRepository;
+    private final RouterPresetRepository routerPresetRepository;
+
+    private final Cache<Long, Customer> customers;
+    private final Cache<Long, Router> routers;
+    private final Cache<Long, RouterPreset> presets;
+
+    public ReferenceDataCache(CustomerRepository customerRepository,
+                              RouterRepository routerRepository,
+                              RouterPresetRepository routerPresetRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${reference-data.cache.max-size:10000}") long maxSize,
+                              @Value("${reference-data.cache.ttl-ms:600000}") long ttlMs) {
+        this.customerRepository = customerRepository;
+        this.routerRepository = routerRepository;
+        this.routerPresetRepository = routerPresetRepository;
+        this.customers = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlMs), "reference.customers");
+        this.routers = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlMs), "reference.routers");
+        this.presets = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlMs), "reference.presets");
+    }
+
+    private static <V> Cache<Long, V> build(long maxSize, long ttlMs) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    // Unknown ids are not cached, so a row created on another node is found on first use
+    public Optional<Customer> getCustomer(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(customers.get(id, k -> customerRepository.findById(k).orElse(null)));
+    }
+
+    public Optional<Router> getRouter(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(routers.get(id, k -> routerRepository.findById(k).orElse(null)));
+    }
+
+    public Optional<RouterPreset> getPreset(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(presets.get(id, k -> routerPresetRepository.findById(k).orElse(null)));
+    }
+
+    // Bulk variants load every miss in one findAllById
+    public Map<Long, Customer> getCustomers(Set<Long> ids) {
+        return customers.getAll(ids, missing -> customerRepository.findAllById(Set.copyOf(missing)).stream()
+                .collect(Collectors.toMap(Customer::getCustomerID, Function.identity())));
+    }
+
+    public Map<Long, Router> getRouters(Set<Long> ids) {
+        return routers.getAll(ids, missing -> routerRepository.findAllById(Set.copyOf(missing)).stream()
+                .collect(Collectors.toMap(Router::getRouterID, Function.identity())));
+    }
+
+    public Map<Long, RouterPreset> getPresets(Set<Long> ids) {
+        return presets.getAll(ids, missing -> routerPresetRepository.findAllById(Set.copyOf(missing)).stream()
+                .collect(Collectors.toMap(RouterPreset::getRouterPresetID, Function.identity())));
+    }
+
+    // Presets embed their customer and router, and are removed with them by ON DELETE CASCADE,
+    // so a change to either drops every cached preset
+    public void evictCustomer(Long id) {
+        if (id != null) {
+            customers.invalidate(id);
+        }
+        presets.invalidateAll();
+    }
+
+    public void evictRouter(Long id) {
+        if (id != null) {
+            routers.invalidate(id);
+        }
+        presets.invalidateAll();
+    }
+
+    public void evictPreset(Long id) {
+        if (id != null) {
+            presets.invalidate(id);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.repository.ReferenceNodeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+// Leases a reference generator node id from the reference_nodes table, for instances that have no
+// orders.reference.node-id configured. An expired lease (its instance died) is taken over before a
+// new id is used. Ids are only handed out while the lease is known to be held: the local deadline is
+// half the lease, so a clock running somewhat fast on another instance cannot take it over early.
+@Service
+public class ReferenceNodeLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceNodeLease.class);
+
+    private final ReferenceNodeRepository referenceNodeRepository;
+    private final long leaseMs;
+    private final String owner;
+
+    private volatile int nodeId = -1;
+    private volatile long heldUntil;
+
+    public ReferenceNodeLease(ReferenceNodeRepository referenceNodeRepository,
+                              @Value("${orders.reference.lease-ms:300000}") long leaseMs) {
+        this.referenceNodeRepository = referenceNodeRepository;
+        this.leaseMs = leaseMs;
+        this.owner = ownerName();
+    }
+
+    // The leased id; fails if the lease could not be renewed in time
+    public int nodeId() {
+        int current = nodeId;
+        if (current < 0 || System.currentTimeMillis() >= heldUntil) {
+            throw new IllegalStateException("Reference node id lease is not held");
+        }
+        return current;
+    }
+
+    public synchronized int acquire() {
+        if (nodeId >= 0) {
+            return nodeId;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusNanos(leaseMs * 1_000_000);
+
+        for (Integer candidate : referenceNodeRepository.findExpiredNodeIds(now)) {
+            if (referenceNodeRepository.takeOver(candidate, owner, now, until) == 1) {
+                return leased(candidate, start, "took over expired");
+            }
+        }
+        Set<Integer> used = new HashSet<>(referenceNodeRepository.findNodeIds());
+        for (int candidate = 0; candidate <= TimeBasedReferenceNumberGenerator.MAX_NODE; candidate++) {
+            if (used.contains(candidate)) {
+                continue;
+            }
+            try {
+                referenceNodeRepository.insert(candidate, owner, until);
+                return leased(candidate, start, "leased new");
+            } catch (DataIntegrityViolationException e) {
+                // Another instance inserted the same id first; try the next one
+            }
+        }
+        throw new IllegalStateException("All " + (TimeBasedReferenceNumberGenerator.MAX_NODE + 1)
+                + " reference node ids are leased");
+    }
+
+    @Scheduled(fixedDelayString = "${orders.reference.lease-renew-ms:60000}")
+    public synchronized void renew() {
+        if (nodeId < 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime until = LocalDateTime.now().plusNanos(leaseMs * 1_000_000);
+        if (referenceNodeRepository.renew(nodeId, owner, until) == 1) {
+            heldUntil = start + leaseMs / 2;
+            return;
+        }
+        // Taken over after this instance missed its renewals: lease another id rather than share one
+        logger.error("Lost the lease on reference node id {}, leasing another", nodeId);
+        nodeId = -1;
+        heldUntil = 0;
+        acquire();
+    }
+
+    // Expire the lease now, so the id can be reused straight away
+    @PreDestroy
+    public synchronized void release() {
+        if (nodeId < 0) {
+            return;
+        }
+        referenceNodeRepository.renew(nodeId, owner, LocalDateTime.now());
+        nodeId = -1;
+        heldUntil = 0;
+    }
+
+    private int leased(int candidate, long start, String how) {
+        heldUntil = start + leaseMs / 2;
+        nodeId = candidate;
+        logger.info("Reference node id {} ({}) for {}", candidate, how, owner);
+        return candidate;
+    }
+
+    private static String ownerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        String name = host + ":" + ProcessHandle.current().pid() + ":" + UUID.randomUUID();
+        return name.length() <= 100 ? name : name.substring(name.length() - 100);
+    }
+}
@@ -0,0 +1,7 @@
+package cf.ac.uk.btrouter.service;
+
+// Source of customer-facing order references ("BT-..."); must be unique across every node
+public interface ReferenceNumberGenerator {
+
+    String next();
+}
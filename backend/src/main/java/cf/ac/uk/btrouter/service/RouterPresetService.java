@@ -10,13 +10,24 @@ import java.util.Optional;
 @Service
 public class RouterPresetService {
     private final RouterPresetRepository routerPresetRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     /* CRUD Operations. */
-    public RouterPresetService(RouterPresetRepository routerPresetRepository) { this.routerPresetRepository = routerPresetRepository; }
+    public RouterPresetService(RouterPresetRepository routerPresetRepository, ReferenceDataCache referenceDataCache) {
+        this.routerPresetRepository = routerPresetRepository;
+        this.referenceDataCache = referenceDataCache;
+    }
     public List<RouterPreset> getAllRouterPresets() { return routerPresetRepository.findAll(); }
     public Optional<RouterPreset> getRouterPresetById(Long routerPresetID) { return routerPresetRepository.findById(routerPresetID); }
-    public RouterPreset saveRouterPreset(RouterPreset routerPreset) { return routerPresetRepository.save(routerPreset); }
-    public void deleteRouterPreset(Long routerPresetID) { routerPresetRepository.deleteById(routerPresetID); }
+    public RouterPreset saveRouterPreset(RouterPreset routerPreset) {
+        RouterPreset saved = routerPresetRepository.save(routerPreset);
+        referenceDataCache.evictPreset(saved.getRouterPresetID());
+        return saved;
+    }
+    public void deleteRouterPreset(Long routerPresetID) {
+        routerPresetRepository.deleteById(routerPresetID);
+        referenceDataCache.evictPreset(routerPresetID);
+    }
 
     /* Custom Operations. */
     public List<RouterPreset> getRouterPresetsByCustomerId(Long customerId) {
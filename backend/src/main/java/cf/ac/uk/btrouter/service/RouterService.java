@@ -10,11 +10,22 @@ import java.util.Optional;
 @Service
 public class RouterService {
     private final RouterRepository routerRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     /* CRUD Operations. */
-    public RouterService(RouterRepository routerRepository) { this.routerRepository = routerRepository; }
+    public RouterService(RouterRepository routerRepository, ReferenceDataCache referenceDataCache) {
+        this.routerRepository = routerRepository;
+        this.referenceDataCache = referenceDataCache;
+    }
     public List<Router> getAllRouters() { return routerRepository.findAll(); }
     public Optional<Router> getRouterById(Long routerID) { return routerRepository.findById(routerID); }
-    public Router saveRouter(Router router) { return routerRepository.save(router); }
-    public void deleteRouter(Long routerID) { routerRepository.deleteById(routerID); }
+    public Router saveRouter(Router router) {
+        Router saved = routerRepository.save(router);
+        referenceDataCache.evictRouter(saved.getRouterID());
+        return saved;
+    }
+    public void deleteRouter(Long routerID) {
+        routerRepository.deleteById(routerID);
+        referenceDataCache.evictRouter(routerID);
+    }
 }
@@ -1,22 +1,48 @@
 package cf.ac.uk.btrouter.service;
 
-import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.dto.OrderExportRow;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
 import cf.ac.uk.btrouter.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFColor;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.function.BiConsumer;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+// Writes the order export as a streamed workbook: rows come from a streamed result set and only the last
+// rowWindow rows of a sheet stay in memory, the rest go to compressed temp files in java.io.tmpdir
 @Service
 public class SpreadsheetGenerationService {
 
     private final OrderRepository orderRepository;
+    private final OrderExportRepository orderExportRepository;
+    private final int rowWindow;
+
+    // Builds the per-customer workbooks of a bundle; shared by all downloads, so at most this many
+    // workbooks (and database connections) are in use at once whatever the number of requests
+    private final ForkJoinPool bundlePool;
 
 
     public String[] HEADERS = {
@@ -29,8 +55,19 @@ public class SpreadsheetGenerationService {
         "Additional Information", "Order Date"
     };
 
-    public SpreadsheetGenerationService(OrderRepository orderRepository) {
+    public SpreadsheetGenerationService(OrderRepository orderRepository,
+                                        OrderExportRepository orderExportRepository,
+                                        @Value("${spreadsheet.export.row-window:100}") int rowWindow,
+                                        @Value("${spreadsheet.export.bundle-threads:0}") int bundleThreads) {
         this.orderRepository = orderRepository;
+        this.orderExportRepository = orderExportRepository;
+        this.rowWindow = rowWindow;
+        this.bundlePool = new ForkJoinPool(bundleThreads > 0 ? bundleThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bundlePool.shutdownNow();
     }
 
 
@@ -39,89 +76,292 @@ public class SpreadsheetGenerationService {
 
     }
 
-    public void write(File file, boolean separateSheets){
-        try(Workbook wb = new XSSFWorkbook()){
-            writeOrders(orderRepository.findAll(), wb);
-            if(separateSheets){
-                writeOrdersByCustomer(getDistinctCustomers(), wb);
+    // Write the workbook straight to out (the response body); nothing is written to the working directory
+    public void write(OutputStream out, boolean separateSheets) throws IOException {
+        SXSSFWorkbook wb = new SXSSFWorkbook(rowWindow);
+        wb.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = createHeaderStyle(wb);
+            if (separateSheets) {
+                writeOrdersByCustomer(wb, headerStyle);
+            } else {
+                writeOrders(wb, headerStyle);
             }
+            wb.write(out);
+        } finally {
+            // Removes the temp files backing flushed rows
+            wb.dispose();
+            wb.close();
+        }
+    }
+
+    private void writeOrders(SXSSFWorkbook wb, CellStyle headerStyle) {
+        SXSSFSheet sheet = wb.createSheet("Full orders");
+        ColumnWidths widths = new ColumnWidths(HEADERS.length);
+        createHeaderRow(sheet, headerStyle, widths);
+        int[] rowNum = {1};
+        orderExportRepository.streamAll(order -> populateRows(sheet.createRow(rowNum[0]++), order, widths));
+        widths.applyTo(sheet);
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(file)){
-                wb.write(fos);
+    // A ZIP with one workbook per customer. Workbooks are not thread-safe, so each is built by its own task
+    // into a temp file; entries are copied into the ZIP in the order the workbooks finish.
+    public void writeCustomerBundle(OutputStream out) throws IOException {
+        List<String> customers = getDistinctCustomers().stream().filter(Objects::nonNull).toList();
+        BundleFiles files = new BundleFiles();
+        ExecutorCompletionService<BundleEntry> completed = new ExecutorCompletionService<>(bundlePool);
+        List<Future<BundleEntry>> tasks = new ArrayList<>();
+        for (String customerEmail : customers) {
+            tasks.add(completed.submit(() -> writeCustomerWorkbook(customerEmail, files)));
+        }
+
+        try {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (int i = 0; i < tasks.size(); i++) {
+                BundleEntry entry = takeCompleted(completed);
+                try {
+                    zip.putNextEntry(new ZipEntry(entry.name()));
+                    Files.copy(entry.file(), zip);
+                    zip.closeEntry();
+                } finally {
+                    files.delete(entry.file());
+                }
             }
-        } catch (IOException e){
-            throw new RuntimeException(e);
+            zip.finish();
+        } finally {
+            // Only does anything after a failure or a closed connection
+            tasks.forEach(task -> task.cancel(false));
+            files.abandon();
         }
     }
 
-    private void writeOrders(List<Order> orders, Workbook wb) {
-        Sheet sheet = wb.createSheet("Full orders");
-        createHeaderRow(sheet);
+    private record BundleEntry(String name, Path file) {
+    }
+
+    // Temp files of one bundle that are written but not yet copied. Once abandoned, they are removed and
+    // workbooks that are still being built delete their own file when they finish.
+    private static final class BundleFiles {
 
-        int rowNum = 1;
+        private final Set<Path> pending = new HashSet<>();
+        private boolean abandoned;
 
-        for (Order order : orders) {
-            Row row = sheet.createRow(rowNum++);
-            populateRows(row, order);
+        synchronized boolean add(Path file) throws IOException {
+            if (abandoned) {
+                Files.deleteIfExists(file);
+                return false;
+            }
+            return pending.add(file);
         }
 
-        for (int i = 0; i < HEADERS.length; i++) {
-            sheet.autoSizeColumn(i);
+        synchronized void delete(Path file) throws IOException {
+            pending.remove(file);
+            Files.deleteIfExists(file);
+        }
+
+        synchronized void abandon() throws IOException {
+            abandoned = true;
+            for (Path file : pending) {
+                Files.deleteIfExists(file);
+            }
+            pending.clear();
+        }
+    }
+
+    private BundleEntry writeCustomerWorkbook(String customerEmail, BundleFiles files) throws IOException {
+        Path file = Files.createTempFile("orders", ".xlsx");
+        SXSSFWorkbook wb = new SXSSFWorkbook(rowWindow);
+        wb.setCompressTempFiles(true);
+        try (OutputStream fileOut = Files.newOutputStream(file)) {
+            SXSSFSheet sheet = wb.createSheet(WorkbookUtil.createSafeSheetName(customerEmail));
+            ColumnWidths widths = new ColumnWidths(HEADERS.length);
+            createHeaderRow(sheet, createHeaderStyle(wb), widths);
+            int[] rowNum = {1};
+            orderExportRepository.streamByEmail(customerEmail,
+                    order -> populateRows(sheet.createRow(rowNum[0]++), order, widths));
+            widths.applyTo(sheet);
+            wb.write(fileOut);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            wb.dispose();
+            wb.close();
         }
+        return files.add(file) ? new BundleEntry(entryName(customerEmail), file) : null;
+    }
+
+    private BundleEntry takeCompleted(ExecutorCompletionService<BundleEntry> completed) throws IOException {
+        try {
+            return completed.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Customer bundle interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not build customer workbook", e.getCause());
+        }
+    }
 
+    private static String entryName(String customerEmail) {
+        return customerEmail.replaceAll("[^A-Za-z0-9@._-]", "_") + ".xlsx";
     }
 
-    private void writeOrdersByCustomer(List<String> distinctCustomers, Workbook wb) {
-        for (String customerEmail : distinctCustomers) {
-            Sheet sheet = wb.createSheet(customerEmail);
-            createHeaderRow(sheet);
-            int rowNum = 1;
-            List<Order> customerOrders = orderRepository.findOrdersByEmail(customerEmail);
-            for (Order order : customerOrders) {
-                Row row = sheet.createRow(rowNum++);
-                populateRows(row, order);
+    // One scan grouped by customer fills the full sheet and cuts a new customer sheet whenever the email
+    // changes, instead of one query per customer; the full sheet is then in customer order too
+    private void writeOrdersByCustomer(SXSSFWorkbook wb, CellStyle headerStyle) {
+        SXSSFSheet fullSheet = wb.createSheet("Full orders");
+        ColumnWidths fullWidths = new ColumnWidths(HEADERS.length);
+        createHeaderRow(fullSheet, headerStyle, fullWidths);
+
+        CustomerSheets customers = new CustomerSheets(wb, headerStyle);
+        int[] rowNum = {1};
+        orderExportRepository.streamByCustomer(order -> {
+            populateRows(fullSheet.createRow(rowNum[0]++), order, fullWidths);
+            customers.write(order);
+        });
+        customers.finish();
+        fullWidths.applyTo(fullSheet);
+    }
+
+    // The customer sheet currently being written; only one is open at a time
+    private final class CustomerSheets {
+
+        private final SXSSFWorkbook wb;
+        private final CellStyle headerStyle;
+        // Lower-cased, as sheet names are case-insensitive
+        private final Set<String> sheetNames = new HashSet<>(Set.of("full orders"));
+        private String email;
+        private SXSSFSheet sheet;
+        private ColumnWidths widths;
+        private int rowNum;
+
+        CustomerSheets(SXSSFWorkbook wb, CellStyle headerStyle) {
+            this.wb = wb;
+            this.headerStyle = headerStyle;
+        }
+
+        void write(OrderExportRow order) {
+            // Orders without an email only appear on the full sheet
+            if (order.sitePrimaryEmail() == null) {
+                return;
             }
-            for (int i = 0; i < HEADERS.length; i++) {
-                sheet.autoSizeColumn(i);
+            // MySQL's collation groups emails that differ only by case together, so they share a sheet
+            if (!order.sitePrimaryEmail().equalsIgnoreCase(email)) {
+                finish();
+                email = order.sitePrimaryEmail();
+                sheet = wb.createSheet(sheetName(email));
+                widths = new ColumnWidths(HEADERS.length);
+                createHeaderRow(sheet, headerStyle, widths);
+                rowNum = 1;
             }
+            populateRows(sheet.createRow(rowNum++), order, widths);
         }
 
+        // Sheet names are at most 31 characters and exclude some characters emails may contain, so
+        // distinct emails can map to the same name; later ones get a numbered suffix
+        private String sheetName(String email) {
+            String base = WorkbookUtil.createSafeSheetName(email);
+            String name = base;
+            for (int n = 2; !sheetNames.add(name.toLowerCase(Locale.ROOT)); n++) {
+                String suffix = " (" + n + ")";
+                name = base.substring(0, Math.min(base.length(), 31 - suffix.length())) + suffix;
+            }
+            return name;
+        }
+
+        // Size the finished sheet and push its remaining rows to disk, so memory stays at one window per open sheet
+        void finish() {
+            if (sheet == null) {
+                return;
+            }
+            widths.applyTo(sheet);
+            try {
+                sheet.flushRows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sheet = null;
+        }
     }
 
-    private void populateRows(Row row, Order order) {
+    private void populateRows(Row row, OrderExportRow order, ColumnWidths widths) {
+        int colNum = 0;
+        setCell(row, colNum++, order.referenceNumber(), widths);
+        setCell(row, colNum++, order.sitePrimaryEmail(), widths);
+        setCell(row, colNum++, order.routerName(), widths);
+        setCell(row, colNum++, order.presetName() != null ? order.presetName() : "None", widths);
+        setCell(row, colNum++, order.primaryOutsideConnections(), widths);
+        setCell(row, colNum++, order.secondaryOutsideConnections(), widths);
+        setCell(row, colNum++, order.insideConnections(), widths);
+        setCell(row, colNum++, order.vlans(), widths);
+        setCell(row, colNum++, order.dhcp() != null && order.dhcp() ? "Yes" : "No", widths);
+        int numRouters = order.numRouters() != null ? order.numRouters() : 1;
+        row.createCell(colNum).setCellValue(numRouters);
+        widths.measure(colNum++, Integer.toString(numRouters));
+        setCell(row, colNum++, order.siteName(), widths);
+        setCell(row, colNum++, order.siteAddress(), widths);
+        setCell(row, colNum++, order.sitePostcode(), widths);
+        setCell(row, colNum++, order.sitePrimaryEmail(), widths);
+        setCell(row, colNum++, order.siteSecondaryEmail(), widths);
+        setCell(row, colNum++, order.sitePhoneNumber(), widths);
+        setCell(row, colNum++, order.siteContactName(), widths);
+        setCell(row, colNum++, order.priorityLevel(), widths);
+        setCell(row, colNum++, order.status(), widths);
+        setCell(row, colNum++, order.additionalInformation(), widths);
+        setCell(row, colNum++, order.orderDate() != null ? order.orderDate().toString() : null, widths);
+    }
 
-        BiConsumer<Cell, Integer> setNumericCell = (cell, value) -> {
-            if (value != null) cell.setCellValue(value.doubleValue());
-        };
+    private void setCell(Row row, int col, String value, ColumnWidths widths) {
+        row.createCell(col).setCellValue(value);
+        widths.measure(col, value);
+    }
 
-        int colNum = 0;
-        row.createCell(colNum++).setCellValue(order.getReferenceNumber());
-        row.createCell(colNum++).setCellValue(order.getEmail());
-        row.createCell(colNum++).setCellValue(order.getRouter().getRouterName());
-        row.createCell(colNum++).setCellValue(order.getRouterPreset() != null ? order.getRouterPreset().getRouterPresetName() : "None");
-        row.createCell(colNum++).setCellValue(order.getPrimaryOutsideConnections());
-        row.createCell(colNum++).setCellValue(order.getSecondaryOutsideConnections());
-        row.createCell(colNum++).setCellValue(order.getInsideConnections());
-        row.createCell(colNum++).setCellValue(order.getVlans().toString());
-        row.createCell(colNum++).setCellValue(order.getDhcp() != null && order.getDhcp() ? "Yes" : "No");
-        row.createCell(colNum++).setCellValue(order.getNumRouters());
-        row.createCell(colNum++).setCellValue(order.getSiteName());
-        row.createCell(colNum++).setCellValue(order.getAddress());
-        row.createCell(colNum++).setCellValue(order.getPostcode());
-        row.createCell(colNum++).setCellValue(order.getSitePrimaryEmail());
-        row.createCell(colNum++).setCellValue(order.getSiteSecondaryEmail());
-        row.createCell(colNum++).setCellValue(order.getSitePhoneNumber());
-        row.createCell(colNum++).setCellValue(order.getSiteContactName());
-        row.createCell(colNum++).setCellValue(order.getPriorityLevel());
-        row.createCell(colNum++).setCellValue(order.getStatus());
-        row.createCell(colNum++).setCellValue(order.getAdditionalInformation());
-        row.createCell(colNum++).setCellValue(order.getOrderDate().toString());
-    }
-
-    private void createHeaderRow(Sheet sheet) {
-        Row row = sheet.createRow(0);
-        CellStyle headerStyle = sheet.getWorkbook().createCellStyle();
-        Font headerFont = sheet.getWorkbook().createFont();
+    // Column widths from the longest value written to each column. autoSizeColumn lays out every cell
+    // with font metrics, which dominated the export time of big sheets; this is one length check per cell.
+    static final class ColumnWidths {
+
+        // Excel widths are in 1/256 of a character and capped at 255 characters
+        private static final int MAX_CHARS = 255;
+        private static final int PADDING_CHARS = 2;
+
+        private final int[] maxChars;
+
+        ColumnWidths(int columns) {
+            this.maxChars = new int[columns];
+        }
+
+        void measure(int col, String value) {
+            if (value == null) {
+                return;
+            }
+            // Multi-line values are as wide as their longest line
+            int longest = 0;
+            int lineStart = 0;
+            for (int i = 0; i <= value.length(); i++) {
+                if (i == value.length() || value.charAt(i) == '\n') {
+                    longest = Math.max(longest, i - lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            if (longest > maxChars[col]) {
+                maxChars[col] = longest;
+            }
+        }
+
+        int widthOf(int col) {
+            return Math.min(maxChars[col] + PADDING_CHARS, MAX_CHARS) * 256;
+        }
+
+        void applyTo(Sheet sheet) {
+            for (int col = 0; col < maxChars.length; col++) {
+                sheet.setColumnWidth(col, widthOf(col));
+            }
+        }
+    }
+
+    // One style for every header row; a workbook has a limited number of styles
+    private CellStyle createHeaderStyle(Workbook wb) {
+        CellStyle headerStyle = wb.createCellStyle();
+        Font headerFont = wb.createFont();
         headerFont.setBold(true);
         headerFont.setFontName("Roboto");
 
@@ -129,11 +369,16 @@ public class SpreadsheetGenerationService {
         XSSFColor xssfColor = new XSSFColor(headerColor, null);
         headerStyle.setFillBackgroundColor(xssfColor);
         headerStyle.setFont(headerFont);
+        return headerStyle;
+    }
 
+    private void createHeaderRow(Sheet sheet, CellStyle headerStyle, ColumnWidths widths) {
+        Row row = sheet.createRow(0);
         for (int i = 0; i < HEADERS.length; i++) {
             Cell cell = row.createCell(i);
             cell.setCellValue(HEADERS[i]);
             cell.setCellStyle(headerStyle);
+            widths.measure(i, HEADERS[i]);
         }
     }
 }
@@ -0,0 +1,144 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+// The admin order workbook, generated once per data version and served from disk until orders change.
+// The version is (count, highest id, latest updated_at) of router_orders, read from indexes, so checking
+// it is cheap next to rebuilding the workbook. Router and preset renames do not move the version; they
+// show up once the snapshot is older than spreadsheet.snapshot.max-age-ms.
+@Service
+public class SpreadsheetSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpreadsheetSnapshotService.class);
+
+    // updated_at has whole-second precision in MySQL, so a version is only trusted once its latest
+    // change is older than this; otherwise a second change in the same second would go unnoticed
+    private static final Duration SETTLE_TIME = Duration.ofSeconds(2);
+
+    public record Snapshot(Path file, String etag) {
+    }
+
+    private record Built(OrderExportRepository.DataVersion version, Snapshot snapshot, LocalDateTime builtAt,
+                         boolean reusable) {
+    }
+
+    // One per workbook layout; its lock makes concurrent requests for a stale snapshot wait for a single rebuild
+    private static final class Variant {
+        private final boolean separateSheets;
+        private Built current;
+        // The file replaced by the last rebuild, kept until the next one as it may still be downloading
+        private Path retired;
+
+        private Variant(boolean separateSheets) {
+            this.separateSheets = separateSheets;
+        }
+    }
+
+    private final SpreadsheetGenerationService spreadsheetService;
+    private final OrderExportRepository orderExportRepository;
+    private final Path directory;
+    private final Duration maxAge;
+    private final Variant fullOrders = new Variant(false);
+    private final Variant customerSheets = new Variant(true);
+
+    public SpreadsheetSnapshotService(SpreadsheetGenerationService spreadsheetService,
+                                      OrderExportRepository orderExportRepository,
+                                      @Value("${spreadsheet.snapshot.dir:${java.io.tmpdir}/btrouter-snapshots}") String directory,
+                                      @Value("${spreadsheet.snapshot.max-age-ms:3600000}") long maxAgeMs) throws IOException {
+        this.spreadsheetService = spreadsheetService;
+        this.orderExportRepository = orderExportRepository;
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+    }
+
+    public Snapshot getSnapshot(boolean separateSheets) throws IOException {
+        LocalDateTime checkedAt = LocalDateTime.now();
+        OrderExportRepository.DataVersion version = orderExportRepository.findDataVersion();
+        Variant variant = separateSheets ? customerSheets : fullOrders;
+
+        synchronized (variant) {
+            Built current = variant.current;
+            if (current != null && current.reusable() && current.version().equals(version)
+                    && current.builtAt().plus(maxAge).isAfter(checkedAt)) {
+                return current.snapshot();
+            }
+            return rebuild(variant, version, checkedAt).snapshot();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Variant variant : new Variant[]{fullOrders, customerSheets}) {
+            synchronized (variant) {
+                if (variant.current != null) {
+                    delete(variant.current.snapshot().file());
+                }
+                delete(variant.retired);
+            }
+        }
+    }
+
+    private Built rebuild(Variant variant, OrderExportRepository.DataVersion version, LocalDateTime checkedAt)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path file = Files.createTempFile(directory, "orders-", ".xlsx");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            spreadsheetService.write(out, variant.separateSheets);
+        } catch (IOException | RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+
+        // Orders changed while the workbook was written carry a newer version, so the next request rebuilds
+        boolean settled = version.lastUpdated() == null || version.lastUpdated().plus(SETTLE_TIME).isBefore(checkedAt);
+        LocalDateTime builtAt = LocalDateTime.now();
+        Built built = new Built(version, new Snapshot(file, etag(version, variant.separateSheets, builtAt)),
+                builtAt, settled);
+
+        delete(variant.retired);
+        variant.retired = variant.current != null ? variant.current.snapshot().file() : null;
+        variant.current = built;
+        logger.info("Rebuilt order spreadsheet snapshot (separate sheets: {}) for {} in {} ms",
+                variant.separateSheets, version, System.currentTimeMillis() - startTime);
+        return built;
+    }
+
+    // The build time is part of the tag: a rebuild after maxAge may pick up renamed routers or presets
+    // under the same order version, and clients must not keep the old file
+    private static String etag(OrderExportRepository.DataVersion version, boolean separateSheets, LocalDateTime builtAt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((version + "|" + separateSheets + "|" + builtAt).getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete spreadsheet snapshot {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cf.ac.uk.btrouter.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// 63-bit ids laid out as | 41 bits millis since EPOCH | 10 bits node | 12 bits sequence |,
+// rendered as 13 Crockford base32 characters so references sort in creation order. The node is
+// orders.reference.node-id when set, otherwise one leased from the database (ReferenceNodeLease).
+@Service
+public class TimeBasedReferenceNumberGenerator implements ReferenceNumberGenerator {
+
+    // 2024-01-01T00:00:00Z; 41 bits of millis from here last until 2093
+    static final long EPOCH = 1_704_067_200_000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    static final String PREFIX = "BT-";
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    // Set when the node id is configured; otherwise lease is
+    private final long node;
+    private final ReferenceNodeLease lease;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence); advanced with CAS only
+    private final AtomicLong state = new AtomicLong();
+
+    public TimeBasedReferenceNumberGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("orders.reference.node-id must be between 0 and " + MAX_NODE);
+        }
+        this.node = nodeId;
+        this.lease = null;
+    }
+
+    // Without a configured id, startup fails unless a node id can be leased
+    @Autowired
+    public TimeBasedReferenceNumberGenerator(@Value("${orders.reference.node-id:-1}") int nodeId,
+                                             ObjectProvider<ReferenceNodeLease> leaseProvider) {
+        if (nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("orders.reference.node-id must be between 0 and " + MAX_NODE);
+        }
+        if (nodeId >= 0) {
+            this.node = nodeId;
+            this.lease = null;
+            return;
+        }
+        ReferenceNodeLease available = leaseProvider.getIfAvailable();
+        if (available == null) {
+            throw new IllegalStateException("orders.reference.node-id is not set and no node id can be leased");
+        }
+        available.acquire();
+        this.node = -1;
+        this.lease = available;
+    }
+
+    @Override
+    public String next() {
+        return encode(nextId());
+    }
+
+    public long nextId() {
+        long nodeId = lease != null ? lease.nodeId() : node;
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        while (true) {
+            long last = state.get();
+            // Never go backwards: if the clock stepped back or this millisecond's sequence is
+            // used up, carry on from the last value and borrow from the next millisecond
+            long next = Math.max(now, last + 1);
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public static String encode(long id) {
+        char[] chars = new char[PREFIX.length() + ENCODED_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for (int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
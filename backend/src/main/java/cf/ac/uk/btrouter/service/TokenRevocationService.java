@@ -0,0 +1,117 @@
+package cf.ac.uk.btrouter.service;
+
+import cf.ac.uk.btrouter.model.TokenRevocation;
+import cf.ac.uk.btrouter.repository.TokenRevocationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Locale;
+
+// Per-user revocation epochs. Every token carries the epoch current when it was issued (the
+// EPOCH_CLAIM claim) and is rejected once the user's epoch has moved past it, so revocation is
+// exact rather than limited to the one-second precision of the iat claim.
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // Cached for users with no revocation, so most requests never touch the database
+    private static final long NOT_REVOKED = 0L;
+
+    public static final String EPOCH_CLAIM = "rev";
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final long jwtExpiration;
+
+    // Every authenticated request checks its user's epoch; a short TTL bounds how long another
+    // node's revocation can go unseen here
+    private final Cache<String, Long> epochs;
+
+    @Autowired
+    public TokenRevocationService(TokenRevocationRepository tokenRevocationRepository,
+                                  @Value("${jwt.expiration}") long jwtExpiration,
+                                  @Value("${jwt.revocation-cache.ttl-ms:5000}") long cacheTtlMs,
+                                  @Value("${jwt.revocation-cache.max-size:10000}") long cacheMaxSize) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.jwtExpiration = jwtExpiration;
+        this.epochs = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .maximumSize(cacheMaxSize)
+                .build();
+    }
+
+    // Invalidate every token issued to this user so far, e.g. after a role change or deletion.
+    // Joins the caller's transaction, so the epoch is only written if the change itself commits
+    @Transactional
+    public void revokeTokensFor(String email) {
+        if (email == null) {
+            return;
+        }
+        String key = normalise(email);
+        TokenRevocation revocation = tokenRevocationRepository.findById(key)
+                .orElseGet(() -> new TokenRevocation(key, NOT_REVOKED));
+        // Always past the previous epoch, so tokens stamped with it are rejected even within the same millisecond
+        revocation.setRevokedBefore(Math.max(System.currentTimeMillis(), revocation.getRevokedBefore() + 1));
+        tokenRevocationRepository.save(revocation);
+        epochChanged(key);
+    }
+
+    // Epoch to stamp on a token being issued now. Read from the table rather than the cache, so a
+    // login straight after a revocation on another node is not stamped with the epoch it replaced
+    public long currentEpoch(String email) {
+        return tokenRevocationRepository.findById(normalise(email))
+                .map(TokenRevocation::getRevokedBefore)
+                .orElse(NOT_REVOKED);
+    }
+
+    // Check whether a token stamped with the given epoch has been revoked for this user. Tokens
+    // without a stamp are only accepted while the user has never been revoked
+    public boolean isRevoked(String email, Long tokenEpoch) {
+        long epoch = epochs.get(normalise(email), key -> tokenRevocationRepository.findById(key)
+                .map(TokenRevocation::getRevokedBefore)
+                .orElse(NOT_REVOKED));
+        if (epoch == NOT_REVOKED) {
+            return false;
+        }
+        return tokenEpoch == null || tokenEpoch < epoch;
+    }
+
+    // Tokens stamped before an epoch older than the JWT lifetime have expired on their own, so the
+    // epoch can go; the next revocation starts from the current time, above any stamp still in use
+    @Scheduled(fixedDelayString = "${jwt.revocation-sweep-interval-ms:3600000}")
+    public void purgeExpired() {
+        int removed = tokenRevocationRepository.deleteRevokedBefore(System.currentTimeMillis() - jwtExpiration);
+        if (removed > 0) {
+            logger.debug("Purged {} expired token revocations", removed);
+        }
+    }
+
+    // Evicting only before commit would let a concurrent request cache the old epoch again,
+    // so evict once more when the revocation is visible
+    private void epochChanged(String key) {
+        epochs.invalidate(key);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                epochs.invalidate(key);
+            }
+        });
+    }
+
+    private static String normalise(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
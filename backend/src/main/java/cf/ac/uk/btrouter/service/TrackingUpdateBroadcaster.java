@@ -0,0 +1,376 @@
+package cf.ac.uk.btrouter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Pushes tracking views to Server-Sent Events subscribers. An idle subscriber is only an SseEmitter
+// in a map (the servlet request is async, no thread is held), so a node can keep thousands open.
+// Every event carries the full view with its ETag as the event id: a client reconnecting with
+// Last-Event-ID gets the current view only if it changed, there is no per-event history to keep.
+// Writes go through a per-subscriber mailbox holding only the latest undelivered event, so one task
+// serves one subscriber and a slow client delays nobody else.
+@Service
+public class TrackingUpdateBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackingUpdateBroadcaster.class);
+
+    static final String EVENT_NAME = "status";
+
+    // Mailbox entry for a heartbeat; a pending snapshot is never replaced by one
+    private static final Object HEARTBEAT = new Object();
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> streamsPerClient = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+    private final Counter droppedDeliveries;
+
+    private final int maxStreams;
+    private final int maxStreamsPerClient;
+    private final long timeoutMs;
+    private final long reconnectMs;
+    private final long stallMs;
+
+    public TrackingUpdateBroadcaster(MeterRegistry meterRegistry,
+                                     @Value("${tracking.stream.max-subscribers:20000}") int maxStreams,
+                                     @Value("${tracking.stream.max-per-client:5}") int maxStreamsPerClient,
+                                     @Value("${tracking.stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${tracking.stream.reconnect-ms:5000}") long reconnectMs,
+                                     @Value("${tracking.stream.threads:2}") int threads,
+                                     @Value("${tracking.stream.queue:1000}") int queueSize,
+                                     @Value("${tracking.stream.stall-ms:10000}") long stallMs) {
+        this.maxStreams = maxStreams;
+        this.maxStreamsPerClient = maxStreamsPerClient;
+        this.timeoutMs = timeoutMs;
+        this.reconnectMs = reconnectMs;
+        this.stallMs = stallMs;
+        this.droppedDeliveries = Counter.builder("tracking.stream.dropped")
+                .description("Tracking stream deliveries dropped because the send queue was full")
+                .register(meterRegistry);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // Sends run here so a slow client never holds a request or scheduler thread. When the queue is
+        // full the delivery is dropped and counted rather than run by the caller; a dropped update closes
+        // the stream, and the client reconnects with Last-Event-ID to pick up the current view
+        RejectedExecutionHandler dropAndCount = (runnable, pool) -> {
+            droppedDeliveries.increment();
+            if (runnable instanceof Delivery delivery) {
+                delivery.rejected();
+            } else if (runnable instanceof Publication publication) {
+                publication.rejected();
+            }
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "tracking-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, dropAndCount);
+
+        Gauge.builder("tracking.stream.subscribers", openStreams, AtomicInteger::get)
+                .description("Open order tracking event streams")
+                .register(meterRegistry);
+    }
+
+    // Thrown when the node or the client already has as many streams open as allowed
+    public static class StreamLimitException extends RuntimeException {
+        public StreamLimitException(String message) {
+            super(message);
+        }
+    }
+
+    private final class Subscriber {
+        private final String key;
+        private final String clientId;
+        private final SseEmitter emitter;
+
+        // Latest undelivered snapshot or HEARTBEAT; guarded by this
+        private Object pending;
+        private boolean draining;
+        private boolean published;
+
+        // Start of the write in progress, 0 when idle; read by the heartbeat to find stalled clients
+        private volatile long sendingSince;
+
+        private Subscriber(String key, String clientId, SseEmitter emitter) {
+            this.key = key;
+            this.clientId = clientId;
+            this.emitter = emitter;
+        }
+
+        // The view read when subscribing is skipped if a change was published to this subscriber since,
+        // as that change was loaded later
+        private void offerFirst(OrderTrackingService.TrackingSnapshot snapshot) {
+            synchronized (this) {
+                if (published) {
+                    return;
+                }
+                pending = snapshot;
+            }
+            schedule();
+        }
+
+        private void offer(OrderTrackingService.TrackingSnapshot snapshot) {
+            synchronized (this) {
+                published = true;
+                pending = snapshot;
+            }
+            schedule();
+        }
+
+        private void offerHeartbeat() {
+            synchronized (this) {
+                if (pending == null) {
+                    pending = HEARTBEAT;
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (draining || pending == null) {
+                    return;
+                }
+                draining = true;
+            }
+            executor.execute(new Delivery(this));
+        }
+
+        private void drain() {
+            while (true) {
+                Object next;
+                synchronized (this) {
+                    next = pending;
+                    pending = null;
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                sendingSince = System.currentTimeMillis();
+                try {
+                    if (next == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        send(this, (OrderTrackingService.TrackingSnapshot) next);
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    drop(this, e);
+                    return;
+                } finally {
+                    sendingSince = 0;
+                }
+            }
+        }
+
+        private boolean stalled(long now) {
+            long since = sendingSince;
+            return since != 0 && now - since > stallMs;
+        }
+    }
+
+    // Loads a committed change once for all of the reference's subscribers
+    private final class Publication implements Runnable {
+        private final String key;
+        private final Supplier<Optional<OrderTrackingService.TrackingSnapshot>> loader;
+
+        private Publication(String key, Supplier<Optional<OrderTrackingService.TrackingSnapshot>> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+
+        @Override
+        public void run() {
+            loader.get().ifPresent(snapshot -> {
+                Set<Subscriber> listening = subscribers.get(key);
+                if (listening != null) {
+                    listening.forEach(subscriber -> subscriber.offer(snapshot));
+                }
+            });
+        }
+
+        // Nobody will hear about this change, so have every subscriber reconnect and resync
+        private void rejected() {
+            Set<Subscriber> listening = subscribers.get(key);
+            if (listening != null) {
+                logger.debug("Closing tracking streams for {}: send queue full", key);
+                listening.forEach(TrackingUpdateBroadcaster.this::close);
+            }
+        }
+    }
+
+    // One subscriber's writes; recognised by the rejection handler
+    private final class Delivery implements Runnable {
+        private final Subscriber subscriber;
+
+        private Delivery(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void run() {
+            subscriber.drain();
+        }
+
+        // A skipped heartbeat is harmless, but a skipped snapshot would leave the client on an old view
+        private void rejected() {
+            boolean snapshotLost;
+            synchronized (subscriber) {
+                snapshotLost = subscriber.pending != null && subscriber.pending != HEARTBEAT;
+                subscriber.pending = null;
+                subscriber.draining = false;
+            }
+            if (snapshotLost) {
+                logger.debug("Closing tracking stream for {}: send queue full", subscriber.key);
+                close(subscriber);
+            }
+        }
+    }
+
+    // Open a stream for the reference; the current view is sent straight away unless the client already has it.
+    // The subscriber is registered before the view is loaded, so a change committed in between is either in
+    // the loaded view or published to the new subscriber. Empty when there is no such order.
+    public Optional<SseEmitter> subscribe(String referenceNumber, String clientId, String lastEventId,
+                                          Supplier<Optional<OrderTrackingService.TrackingSnapshot>> loader) {
+        reserve(clientId);
+
+        Subscriber subscriber = new Subscriber(OrderTrackingService.referenceKey(referenceNumber), clientId,
+                new SseEmitter(timeoutMs));
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(error -> remove(subscriber));
+        subscribers.compute(subscriber.key, (key, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+
+        Optional<OrderTrackingService.TrackingSnapshot> current;
+        try {
+            current = loader.get();
+        } catch (RuntimeException e) {
+            remove(subscriber);
+            throw e;
+        }
+        if (current.isEmpty()) {
+            remove(subscriber);
+            return Optional.empty();
+        }
+        if (!current.get().etag().equals(lastEventId)) {
+            subscriber.offerFirst(current.get());
+        }
+        logger.debug("Tracking stream opened for {} by {}", subscriber.key, clientId);
+        return Optional.of(subscriber.emitter);
+    }
+
+    // Called after a tracking change commits; the view is only loaded when someone is listening, once,
+    // and then handed to each subscriber's mailbox
+    public void publish(String referenceNumber, Supplier<Optional<OrderTrackingService.TrackingSnapshot>> loader) {
+        String key = OrderTrackingService.referenceKey(referenceNumber);
+        if (!subscribers.containsKey(key)) {
+            return;
+        }
+        executor.execute(new Publication(key, loader));
+    }
+
+    // Comment lines keep proxies from closing idle streams and expose dead connections. A subscriber
+    // whose write has been blocked longer than the stall limit is dropped instead.
+    @Scheduled(fixedDelayString = "${tracking.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> {
+            if (subscriber.stalled(now)) {
+                drop(subscriber, new IOException("write stalled for more than " + stallMs + " ms"));
+            } else {
+                subscriber.offerHeartbeat();
+            }
+        }));
+    }
+
+    public int openStreams() {
+        return openStreams.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void send(Subscriber subscriber, OrderTrackingService.TrackingSnapshot snapshot) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(snapshot.etag())
+                .name(EVENT_NAME)
+                .reconnectTime(reconnectMs)
+                .data(snapshot.view(), MediaType.APPLICATION_JSON));
+    }
+
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        subscriber.emitter.complete();
+    }
+
+    private void drop(Subscriber subscriber, Exception e) {
+        logger.debug("Dropping tracking stream for {}: {}", subscriber.key, e.getMessage());
+        remove(subscriber);
+        subscriber.emitter.completeWithError(e);
+    }
+
+    private void reserve(String clientId) {
+        if (openStreams.incrementAndGet() > maxStreams) {
+            openStreams.decrementAndGet();
+            throw new StreamLimitException("Too many open tracking streams");
+        }
+        boolean[] admitted = {false};
+        streamsPerClient.compute(clientId, (key, count) -> {
+            int open = count != null ? count : 0;
+            if (open >= maxStreamsPerClient) {
+                return count;
+            }
+            admitted[0] = true;
+            return open + 1;
+        });
+        if (!admitted[0]) {
+            openStreams.decrementAndGet();
+            throw new StreamLimitException("At most " + maxStreamsPerClient + " tracking streams per client");
+        }
+    }
+
+    // Completion, timeout, error and a failed send can all report the same subscriber; only the first counts
+    private void remove(Subscriber subscriber) {
+        boolean[] removed = {false};
+        subscribers.computeIfPresent(subscriber.key, (key, set) -> {
+            removed[0] = set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        if (removed[0]) {
+            openStreams.decrementAndGet();
+            streamsPerClient.computeIfPresent(subscriber.clientId, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+}
@@ -5,25 +5,40 @@ import cf.ac.uk.btrouter.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @Service
 public class UserService {
+    private static final Duration RESET_TOKEN_TTL = Duration.ofMinutes(5);
+    private static final Duration TWO_FA_CODE_TTL = Duration.ofMinutes(10);
+
+    private final SecureRandom random = new SecureRandom();
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final TokenRevocationService tokenRevocationService;
+    private final EphemeralSecretStore secretStore;
 
     @Autowired
     public UserService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
-                       EmailService emailService) {
+                       EmailService emailService,
+                       TokenRevocationService tokenRevocationService,
+                       EphemeralSecretStore secretStore) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.secretStore = secretStore;
     }
 
     // Find user by email
@@ -41,8 +56,36 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    @Transactional
     public void delete(User user) {
         userRepository.delete(user);
+        tokenRevocationService.revokeTokensFor(user.getEmail());
+    }
+
+    // Admin edit; tokens carry the email and role, so outstanding ones must not outlive a change
+    // to either, or to the password. The revocation commits together with the change.
+    @Transactional
+    public User updateUser(int id, User userUpdate) {
+        User currentUser = findById(id);
+        String previousEmail = currentUser.getEmail();
+        User.Role previousRole = currentUser.getRole();
+
+        currentUser.setFirstName(userUpdate.getFirstName());
+        currentUser.setLastName(userUpdate.getLastName());
+        currentUser.setEmail(userUpdate.getEmail());
+        currentUser.setRole(userUpdate.getRole());
+
+        // Update password only if a new one is provided
+        boolean passwordChanged = userUpdate.getPassword() != null && !userUpdate.getPassword().isEmpty();
+        if (passwordChanged) {
+            currentUser.setPassword(passwordEncoder.encode(userUpdate.getPassword()));
+        }
+        User saved = userRepository.save(currentUser);
+
+        if (passwordChanged || !previousEmail.equals(saved.getEmail()) || previousRole != saved.getRole()) {
+            tokenRevocationService.revokeTokensFor(previousEmail);
+        }
+        return saved;
     }
 
     public User findById(int id){
@@ -61,46 +104,42 @@ public class UserService {
         return userRepository.save(user);
     }
 
-    // Password reset token generation
+    // Password reset token generation; only the token hash is stored, keyed for direct lookup
     public void createPasswordResetTokenForUser(String email) {
         User user = findByEmail(email);
         String token = UUID.randomUUID().toString();
+        String tokenHash = EphemeralSecretStore.hash(token);
 
-        user.setResetToken(token);
-        user.setResetTokenExpiry(LocalDateTime.now().plusMinutes(5));
-        userRepository.save(user);
+        // A new request replaces any token sent earlier
+        String userKey = resetUserKey(user.getEmail());
+        secretStore.get(userKey).ifPresent(previous -> secretStore.remove(resetTokenKey(previous)));
+        secretStore.put(resetTokenKey(tokenHash), user.getEmail(), RESET_TOKEN_TTL);
+        secretStore.put(userKey, tokenHash, RESET_TOKEN_TTL);
 
         emailService.sendPasswordResetEmail(email, token);
     }
 
-    // Token validation
+    // Token validation; expired tokens are gone from the store, so they read as invalid
     public String validatePasswordResetToken(String token) {
-        User user = userRepository.findByResetToken(token)
-                .orElseThrow(() -> new RuntimeException("Invalid token"));
-
-        if (user.getResetTokenExpiry().isBefore(LocalDateTime.now())) {
-            user.setResetToken(null);
-            user.setResetTokenExpiry(null);
-            userRepository.save(user);
-            return "expired";
+        if (token == null || secretStore.get(resetTokenKey(EphemeralSecretStore.hash(token))).isEmpty()) {
+            return "invalid";
         }
-
         return "valid";
     }
 
     // Password reset
+    @Transactional
     public void resetPassword(String token, String newPassword) {
-        User user = userRepository.findByResetToken(token)
+        String tokenKey = resetTokenKey(EphemeralSecretStore.hash(token));
+        String email = secretStore.get(tokenKey)
                 .orElseThrow(() -> new RuntimeException("Invalid token"));
-
-        if (user.getResetTokenExpiry().isBefore(LocalDateTime.now())) {
-            throw new RuntimeException("Token has expired");
-        }
+        User user = findByEmail(email);
 
         user.setPassword(passwordEncoder.encode(newPassword));
-        user.setResetToken(null);
-        user.setResetTokenExpiry(null);
         userRepository.save(user);
+        secretStore.remove(tokenKey);
+        secretStore.remove(resetUserKey(email));
+        tokenRevocationService.revokeTokensFor(user.getEmail());
     }
 
     // Update user settings
@@ -141,13 +180,16 @@ public class UserService {
     }
 
     // Delete user
+    @Transactional
     public void deleteUser(String email) {
         User user = findByEmail(email);
         emailAdminOnDelete(user); // notify the admin enit
         userRepository.delete(user);
+        tokenRevocationService.revokeTokensFor(email);
     }
 
-    // Change password
+    // Change password; tokens issued before the change stop working
+    @Transactional
     public void changePassword(String email, String currentPassword, String newPassword, String confirmPassword) {
         User user = findByEmail(email);
 
@@ -165,30 +207,46 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        tokenRevocationService.revokeTokensFor(user.getEmail());
     }
 
     // Generate & send 2FA code
     public void generateAndSendTwoFACode(User user) {
-        String code = String.format("%06d", new Random().nextInt(999999));
-        user.setTwoFactorCode(code);
-        user.setTwoFactorExpiry(LocalDateTime.now().plusMinutes(10));
-        userRepository.save(user);
+        String code = String.format("%06d", random.nextInt(1_000_000));
+        secretStore.put(twoFAKey(user.getEmail()), EphemeralSecretStore.hash(code), TWO_FA_CODE_TTL);
 
         emailService.sendTwoFactorCode(user.getEmail(), code);
     }
 
     // Validate 2FA code
     public boolean validateTwoFACode(String email, String code) {
-        User user = findByEmail(email);
-        return user.getTwoFactorCode() != null &&
-                user.getTwoFactorCode().equals(code) &&
-                user.getTwoFactorExpiry().isAfter(LocalDateTime.now());
+        if (email == null || code == null) {
+            return false;
+        }
+        byte[] given = EphemeralSecretStore.hash(code).getBytes(StandardCharsets.UTF_8);
+        return secretStore.get(twoFAKey(email))
+                .map(stored -> MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), given))
+                .orElse(false);
     }
 
     // Clear 2FA code
     public void clearTwoFACode(User user) {
-        user.setTwoFactorCode(null);
-        user.setTwoFactorExpiry(null);
-        userRepository.save(user);
+        secretStore.remove(twoFAKey(user.getEmail()));
+    }
+
+    private static String twoFAKey(String email) {
+        return "2fa:" + normalise(email);
+    }
+
+    private static String resetTokenKey(String tokenHash) {
+        return "reset:" + tokenHash;
+    }
+
+    private static String resetUserKey(String email) {
+        return "reset-user:" + normalise(email);
+    }
+
+    private static String normalise(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -14,6 +14,11 @@ DROP TABLE IF EXISTS customers;
 DROP TABLE IF EXISTS users;
 DROP TABLE IF EXISTS roles;
 DROP TABLE IF EXISTS order_tracking;
+DROP TABLE IF EXISTS ephemeral_secrets;
+DROP TABLE IF EXISTS outbox_events;
+DROP TABLE IF EXISTS order_status_events;
+DROP TABLE IF EXISTS token_revocations;
+DROP TABLE IF EXISTS reference_nodes;
 
 SET FOREIGN_KEY_CHECKS=1;
 
@@ -126,6 +131,8 @@ CREATE TABLE router_orders (
     priority_level VARCHAR(20) NOT NULL,
     additional_information VARCHAR(500),
     add_another_router BOOLEAN DEFAULT FALSE,
+    reference_number VARCHAR(255),
+    status VARCHAR(255),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
 
@@ -139,7 +146,19 @@ CREATE TABLE router_orders (
 
     FOREIGN KEY (router_preset_id) REFERENCES router_presets(router_preset_id)
         ON DELETE CASCADE
-        ON UPDATE CASCADE
+        ON UPDATE CASCADE,
+
+    -- Keyset pagination on (created_at, router_order_id), optionally narrowed by one filter
+    INDEX idx_router_orders_created (created_at, router_order_id),
+    INDEX idx_router_orders_status_created (status, created_at, router_order_id),
+    INDEX idx_router_orders_priority_created (priority_level, created_at, router_order_id),
+    INDEX idx_router_orders_customer_created (customer_id, created_at, router_order_id),
+
+    -- Latest change, for the export snapshot version
+    INDEX idx_router_orders_updated (updated_at),
+
+    -- Guard against reference collisions; seeded rows without a reference are NULL and exempt
+    UNIQUE INDEX uk_router_orders_reference (reference_number)
 );
 
 CREATE TABLE order_tracking (
@@ -174,3 +193,55 @@ CREATE TABLE user_reports (
     explanation TEXT,
     CONSTRAINT uq_report_reference UNIQUE (report_reference)
 );
+
+CREATE TABLE outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(30) NOT NULL,
+    router_order_id BIGINT NOT NULL,
+    reference_number VARCHAR(50),
+    status VARCHAR(50),
+    announce BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    available_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INT NOT NULL DEFAULT 0,
+    dispatched_at TIMESTAMP NULL,
+    last_error VARCHAR(500),
+    -- The relay polls for undispatched events that are due
+    INDEX idx_outbox_events_due (dispatched_at, available_at)
+);
+
+-- Append-only status history, written with every tracking status change
+CREATE TABLE order_status_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    router_order_id BIGINT NOT NULL,
+    reference_number VARCHAR(50),
+    from_status VARCHAR(50),
+    to_status VARCHAR(50) NOT NULL,
+    occurred_at TIMESTAMP(3) NOT NULL,
+    -- Time spent in from_status, so stage statistics need no self-join
+    duration_ms BIGINT,
+    INDEX idx_order_status_events_order (router_order_id, occurred_at),
+    INDEX idx_order_status_events_status (to_status, occurred_at),
+    INDEX idx_order_status_events_stage (from_status, occurred_at, duration_ms)
+);
+
+CREATE TABLE ephemeral_secrets (
+    secret_key VARCHAR(128) PRIMARY KEY,
+    secret_value VARCHAR(255) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_ephemeral_secrets_expires_at (expires_at)
+);
+
+-- Tokens stamped with an epoch below revoked_before (millis, only ever increases) are rejected on every node
+CREATE TABLE token_revocations (
+    email VARCHAR(255) PRIMARY KEY,
+    revoked_before BIGINT NOT NULL,
+    INDEX idx_token_revocations_revoked_before (revoked_before)
+);
+
+-- Reference generator node ids leased by running instances without a configured node id
+CREATE TABLE reference_nodes (
+    node_id INT PRIMARY KEY,
+    owner VARCHAR(100) NOT NULL,
+    lease_expires_at TIMESTAMP NOT NULL
+);
@@ -14,10 +14,15 @@ import cf.ac.uk.btrouter.dto.LoginDTO;
 import cf.ac.uk.btrouter.dto.RegisterDTO;
 import cf.ac.uk.btrouter.model.User;
 import cf.ac.uk.btrouter.repository.UserRepository;
+import cf.ac.uk.btrouter.service.EmailService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,6 +40,9 @@ public class AuthTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @MockBean
+    private EmailService emailService;
+
     // Registration Tests
 
     @Test
@@ -305,10 +313,11 @@ public class AuthTests {
         String response = result.getResponse().getContentAsString();
         assertTrue(response.contains("Password reset email sent"));
         
-        User user = userRepository.findByEmail("reset@example.com").orElse(null);
-        assertNotNull(user);
-        assertNotNull(user.getResetToken());
-        assertNotNull(user.getResetTokenExpiry());
+        String resetToken = sentResetToken("reset@example.com");
+        assertNotNull(resetToken);
+        mockMvc.perform(get("/api/auth/reset-password/validate")
+                .param("token", resetToken))
+                .andExpect(status().isOk());
     }
 
     @Test
@@ -342,8 +351,7 @@ public class AuthTests {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content("{\"email\":\"reset2@example.com\"}"));
 
-        User user = userRepository.findByEmail("reset2@example.com").orElse(null);
-        String resetToken = user.getResetToken();
+        String resetToken = sentResetToken("reset2@example.com");
 
         // When: Resetting password with valid token
         MvcResult result = mockMvc.perform(post("/api/auth/reset-password")
@@ -356,9 +364,10 @@ public class AuthTests {
         String response = result.getResponse().getContentAsString();
         assertTrue(response.contains("Password has been reset successfully"));
         
-        user = userRepository.findByEmail("reset2@example.com").orElse(null);
-        assertNull(user.getResetToken());
-        assertNull(user.getResetTokenExpiry());
+        // Token is single use
+        mockMvc.perform(get("/api/auth/reset-password/validate")
+                .param("token", resetToken))
+                .andExpect(status().isBadRequest());
 
         // Verify can login with new password
         LoginDTO loginDTO = new LoginDTO();
@@ -409,17 +418,23 @@ public class AuthTests {
                 .content(objectMapper.writeValueAsString(resetRequest)))
                 .andExpect(status().isOk());
 
-        // Get the user and their reset token
-        User savedUser = userRepository.findByEmail("validate@example.com").orElse(null);
-        assertNotNull(savedUser, "User should exist after registration");
-        assertNotNull(savedUser.getResetToken(), "Reset token should be generated");
+        // Get the reset token that was emailed
+        String resetToken = sentResetToken("validate@example.com");
+        assertNotNull(resetToken, "Reset token should be generated");
 
         // Then: Validate the token
         mockMvc.perform(get("/api/auth/reset-password/validate")
-                .param("token", savedUser.getResetToken()))
+                .param("token", resetToken))
                 .andExpect(status().isOk());
     }
 
+    // Reset tokens are only held hashed, so read the plain token from the email that was sent
+    private String sentResetToken(String email) {
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(emailService).sendPasswordResetEmail(eq(email), token.capture());
+        return token.getValue();
+    }
+
     @Test
     public void testLoginWithValidTokenAccess() throws Exception {
         // Given: A registered and logged in user
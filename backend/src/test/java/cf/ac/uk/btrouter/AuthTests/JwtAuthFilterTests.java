@@ -0,0 +1,177 @@
+package cf.ac.uk.btrouter.AuthTests;
+
+import cf.ac.uk.btrouter.config.SecurityConfig;
+import cf.ac.uk.btrouter.model.TokenRevocation;
+import cf.ac.uk.btrouter.repository.TokenRevocationRepository;
+import cf.ac.uk.btrouter.service.CustomUserDetailsService;
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthFilterTests {
+
+    private static final String SECRET = Base64.getEncoder()
+            .encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+    private SecurityConfig securityConfig;
+    private CustomUserDetailsService userDetailsService;
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    public void setup() {
+        SecurityContextHolder.clearContext();
+
+        userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("user@bt.com"))
+                .thenReturn(new User("user@bt.com", "", Collections.emptyList()));
+
+        // Stands in for the token_revocations table
+        Map<String, TokenRevocation> revocations = new HashMap<>();
+        TokenRevocationRepository revocationRepository = mock(TokenRevocationRepository.class);
+        when(revocationRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(revocations.get(inv.<String>getArgument(0))));
+        when(revocationRepository.save(any(TokenRevocation.class))).thenAnswer(inv -> {
+            TokenRevocation revocation = inv.getArgument(0);
+            revocations.put(revocation.getEmail(), revocation);
+            return revocation;
+        });
+        tokenRevocationService = new TokenRevocationService(revocationRepository, 60_000L, 60_000L, 100L);
+
+        securityConfig = new SecurityConfig();
+        ReflectionTestUtils.setField(securityConfig, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(securityConfig, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(securityConfig, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(securityConfig, "customUserDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(securityConfig, "tokenRevocationService", tokenRevocationService);
+    }
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testValidTokenAuthenticatesWithRoleFromClaims() throws Exception {
+        String token = securityConfig.generateToken("user@bt.com", "ADMIN");
+
+        Authentication authentication = filter(token);
+
+        assertNotNull(authentication);
+        assertEquals("user@bt.com", authentication.getName());
+        assertTrue(authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+    }
+
+    @Test
+    public void testRepeatedTokenIsServedFromClaimsCache() {
+        String token = securityConfig.generateToken("user@bt.com", "USER");
+
+        Claims first = securityConfig.parseClaims(token);
+        Claims second = securityConfig.parseClaims(token);
+
+        assertSame(first, second);
+        assertEquals("USER", securityConfig.extractRole(token));
+        assertEquals("user@bt.com", securityConfig.extractUsername(token));
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() throws Exception {
+        String token = securityConfig.generateToken("user@bt.com", "USER");
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertNull(filter(tampered));
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() throws Exception {
+        String expired = Jwts.builder()
+                .setSubject("user@bt.com")
+                .claim("role", "USER")
+                .setIssuedAt(new Date(System.currentTimeMillis() - 120_000))
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+
+        assertNull(filter(expired));
+    }
+
+    @Test
+    public void testStatelessModeSkipsUserLookup() throws Exception {
+        ReflectionTestUtils.setField(securityConfig, "statelessPrincipal", true);
+        String token = securityConfig.generateToken("user@bt.com", "SUPPORT_AGENT");
+
+        Authentication authentication = filter(token);
+
+        assertNotNull(authentication);
+        assertEquals("user@bt.com", authentication.getName());
+        assertTrue(authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_SUPPORT_AGENT")));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    public void testRevokedTokenIsRejected() throws Exception {
+        ReflectionTestUtils.setField(securityConfig, "statelessPrincipal", true);
+        String token = Jwts.builder()
+                .setSubject("user@bt.com")
+                .claim("role", "ADMIN")
+                .setIssuedAt(new Date(System.currentTimeMillis() - 5_000))
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+        assertNotNull(filter(token));
+        SecurityContextHolder.clearContext();
+
+        // Role changed by an admin: the cached claims must not keep the old role alive
+        tokenRevocationService.revokeTokensFor("user@bt.com");
+
+        assertNull(filter(token));
+        assertNotNull(filter(securityConfig.generateToken("user@bt.com", "USER")));
+    }
+
+    @Test
+    public void testTokenIssuedInTheSameSecondAsRevocationIsRejected() throws Exception {
+        String stolen = securityConfig.generateToken("user@bt.com", "USER");
+        assertNotNull(filter(stolen));
+        SecurityContextHolder.clearContext();
+
+        // Password changed straight away; iat alone could not tell these tokens apart
+        tokenRevocationService.revokeTokensFor("user@bt.com");
+        String fresh = securityConfig.generateToken("user@bt.com", "USER");
+
+        assertNull(filter(stolen));
+        assertNotNull(filter(fresh));
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders/user");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        securityConfig.jwtAuthFilter().doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
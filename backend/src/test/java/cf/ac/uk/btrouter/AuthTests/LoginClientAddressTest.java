@@ -0,0 +1,47 @@
+package cf.ac.uk.btrouter.AuthTests;
+
+import cf.ac.uk.btrouter.BtRouterApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs through the real Tomcat connector, where the remote address is resolved from X-Forwarded-For.
+// The test client connects over loopback, which is the trusted proxy by default.
+@SpringBootTest(classes = BtRouterApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.sql.init.mode=never", "login.rate-limit.ip-attempts=2"})
+@ActiveProfiles("h2")
+public class LoginClientAddressTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testClientsBehindTrustedProxyHaveSeparateBuckets() {
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.7", "first@bt.com"));
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.7", "second@bt.com"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.7", "third@bt.com"));
+
+        // Another client behind the same proxy is not locked out
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.8", "third@bt.com"));
+    }
+
+    private HttpStatusCode login(String clientAddress, String email) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Forwarded-For", clientAddress);
+        Map<String, String> body = Map.of("email", email, "password", "wrong-password");
+        return restTemplate.postForEntity("/api/auth/login", new HttpEntity<>(body, headers), String.class)
+                .getStatusCode();
+    }
+}
@@ -0,0 +1,55 @@
+package cf.ac.uk.btrouter.AuthTests;
+
+import cf.ac.uk.btrouter.service.LoginRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginRateLimiterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoginRateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new LoginRateLimiter(meterRegistry, 10_000, 5, 20);
+    }
+
+    @Test
+    public void testAccountIsLimitedAcrossCaseAndWhitespace() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.tryConsume("10.0.0." + i, i % 2 == 0 ? "User@BT.com" : " user@bt.com ").isConsumed());
+        }
+
+        assertFalse(rateLimiter.tryConsume("10.0.0.99", "user@bt.com").isConsumed());
+        assertEquals(1.0, meterRegistry.get("auth.login.rate_limit.rejections").tag("scope", "account").counter().count());
+    }
+
+    @Test
+    public void testClientIpIsLimitedAcrossAccounts() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(rateLimiter.tryConsume("10.0.0.1", "victim" + i + "@bt.com").isConsumed());
+        }
+
+        assertFalse(rateLimiter.tryConsume("10.0.0.1", "another@bt.com").isConsumed());
+        assertTrue(rateLimiter.tryConsume("10.0.0.2", "another@bt.com").isConsumed());
+        assertEquals(1.0, meterRegistry.get("auth.login.rate_limit.rejections").tag("scope", "ip").counter().count());
+    }
+
+    @Test
+    public void testBucketStoreStaysBoundedUnderDistinctKeys() {
+        // Credential stuffing: millions of distinct accounts from many addresses
+        for (int i = 0; i < 2_000_000; i++) {
+            rateLimiter.tryConsume("10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff),
+                    "user" + i + "@example.com");
+        }
+        rateLimiter.cleanUp();
+
+        assertTrue(rateLimiter.liveBuckets() <= 10_000, "live buckets: " + rateLimiter.liveBuckets());
+        assertEquals((double) rateLimiter.liveBuckets(),
+                meterRegistry.get("auth.login.rate_limit.buckets").gauge().value());
+    }
+}
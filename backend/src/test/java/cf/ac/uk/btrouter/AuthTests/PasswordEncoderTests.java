@@ -0,0 +1,113 @@
+package cf.ac.uk.btrouter.AuthTests;
+
+import cf.ac.uk.btrouter.config.BoundedPasswordEncoder;
+import cf.ac.uk.btrouter.config.PasswordEncoderConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PasswordEncoderTests {
+
+    // Hash as stored by the old plain BCryptPasswordEncoder (strength 10, no {id} prefix)
+    private static final String LEGACY_HASH = new BCryptPasswordEncoder(4).encode("Test123!@#");
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        PasswordEncoderConfig config = new PasswordEncoderConfig();
+        ReflectionTestUtils.setField(config, "bcryptStrength", 5);
+        ReflectionTestUtils.setField(config, "hashThreads", 2);
+        ReflectionTestUtils.setField(config, "hashQueue", 8);
+        passwordEncoder = config.passwordEncoder(meterRegistry);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        ((BoundedPasswordEncoder) passwordEncoder).shutdown();
+    }
+
+    @Test
+    public void testCalibrationStaysWithinBounds() {
+        assertEquals(PasswordEncoderConfig.MIN_STRENGTH, PasswordEncoderConfig.calibrateBCryptStrength(1));
+
+        int strength = PasswordEncoderConfig.calibrateBCryptStrength(100_000);
+        assertTrue(strength >= PasswordEncoderConfig.MIN_STRENGTH && strength <= PasswordEncoderConfig.MAX_STRENGTH);
+    }
+
+    @Test
+    public void testLegacyHashMatchesAndIsMarkedForUpgrade() {
+        assertTrue(passwordEncoder.matches("Test123!@#", LEGACY_HASH));
+        assertTrue(passwordEncoder.upgradeEncoding(LEGACY_HASH));
+
+        String current = passwordEncoder.encode("Test123!@#");
+        assertTrue(current.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(passwordEncoder.matches("Test123!@#", current));
+        assertFalse(passwordEncoder.upgradeEncoding(current));
+    }
+
+    @Test
+    public void testSuccessfulLoginRehashesLegacyHash() {
+        UserDetailsService userDetailsService = mock(UserDetailsService.class);
+        UserDetailsPasswordService passwordService = mock(UserDetailsPasswordService.class);
+        UserDetails legacyUser = User.withUsername("user@bt.com").password(LEGACY_HASH).roles("USER").build();
+        when(userDetailsService.loadUserByUsername("user@bt.com")).thenReturn(legacyUser);
+        when(passwordService.updatePassword(any(), anyString())).thenAnswer(invocation -> legacyUser);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(passwordEncoder);
+        provider.setUserDetailsPasswordService(passwordService);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user@bt.com", "Test123!@#"));
+
+        verify(passwordService).updatePassword(eq(legacyUser), startsWith("{bcrypt}$2a$05$"));
+    }
+
+    @Test
+    public void testSaturatedHashingIsRejectedNotQueued() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = mock(PasswordEncoder.class);
+        when(blocking.matches(any(), any())).thenAnswer(invocation -> release.await(10, TimeUnit.SECONDS));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder bounded = new BoundedPasswordEncoder(blocking, 1, 1, registry);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // One running, one queued
+            callers.submit(() -> bounded.matches("a", "hash"));
+            callers.submit(() -> bounded.matches("b", "hash"));
+            while (registry.get("auth.password_hash.queue_depth").gauge().value() < 1) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(BoundedPasswordEncoder.HashingBusyException.class, () -> bounded.matches("c", "hash"));
+            assertEquals(1.0, registry.get("auth.password_hash.rejections").counter().count());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            bounded.shutdown();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cf.ac.uk.btrouter.AuthTests;
+
+import cf.ac.uk.btrouter.config.SecurityConfig;
+import cf.ac.uk.btrouter.config.StompAuthInterceptor;
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Principal;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class StompAuthInterceptorTest {
+
+    private static final String SECRET = Base64.getEncoder()
+            .encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+    private SecurityConfig securityConfig;
+    private TokenRevocationService tokenRevocationService;
+    private StompAuthInterceptor interceptor;
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @BeforeEach
+    public void setup() {
+        tokenRevocationService = mock(TokenRevocationService.class);
+
+        securityConfig = new SecurityConfig();
+        ReflectionTestUtils.setField(securityConfig, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(securityConfig, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(securityConfig, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(securityConfig, "tokenRevocationService", tokenRevocationService);
+
+        interceptor = new StompAuthInterceptor(securityConfig, tokenRevocationService);
+    }
+
+    @Test
+    public void testConnectWithValidTokenSetsTheUser() {
+        Message<?> connect = connect("Bearer " + securityConfig.generateToken("admin@bt.com", "ADMIN"));
+
+        interceptor.preSend(connect, channel);
+
+        Principal user = StompHeaderAccessor.wrap(connect).getUser();
+        assertEquals("admin@bt.com", user.getName());
+        assertTrue(((Authentication) user).getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+    }
+
+    @Test
+    public void testConnectWithoutTokenIsRejected() {
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(connect(null), channel));
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(connect("Bearer not-a-jwt"), channel));
+    }
+
+    @Test
+    public void testConnectWithRevokedTokenIsRejected() {
+        String token = securityConfig.generateToken("user@bt.com", "ADMIN");
+        when(tokenRevocationService.isRevoked(eq("user@bt.com"), any())).thenReturn(true);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(connect("Bearer " + token), channel));
+    }
+
+    @Test
+    public void testUserCannotSubscribeToAdminTopics() {
+        Authentication user = user("USER");
+
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/admin/orders", user), channel));
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/app/admin/orders", user), channel));
+        // The /app mappings ignore empty segments
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/app//admin/orders", user), channel));
+    }
+
+    @Test
+    public void testUserCannotSubscribeWithPatterns() {
+        Authentication user = user("USER");
+
+        // The simple broker would match these against /topic/admin/orders
+        for (String pattern : List.of("/topic/**", "/topic/*/orders", "/topic/adm?n/orders", "/topic/{area}/orders")) {
+            assertThrows(AccessDeniedException.class,
+                    () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, pattern, user), channel), pattern);
+        }
+    }
+
+    @Test
+    public void testAdminsAndSupportAgentsCanSubscribe() {
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/admin/orders", user("ADMIN")), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/app/admin/orders", user("SUPPORT_AGENT")), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/**", user("ADMIN")), channel));
+    }
+
+    @Test
+    public void testUnauthenticatedFramesAreRejected() {
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/news", null), channel));
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/app/news", null), channel));
+    }
+
+    @Test
+    public void testClientsCannotPublishToTopics() {
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/topic/admin/orders", user("ADMIN")), channel));
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/topic/news", user("USER")), channel));
+    }
+
+    private static Message<?> connect(String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (authorization != null) {
+            accessor.setNativeHeader("Authorization", authorization);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> frame(StompCommand command, String destination, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Authentication user(String role) {
+        return new UsernamePasswordAuthenticationToken("someone@bt.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+}
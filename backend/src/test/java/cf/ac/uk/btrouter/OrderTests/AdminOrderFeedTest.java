@@ -0,0 +1,151 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.BatchOrderResult;
+import cf.ac.uk.btrouter.dto.OrderQueueEvent;
+import cf.ac.uk.btrouter.dto.OrderQueueSnapshot;
+import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Commits for real: events are only published once a change commits
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({OrderTrackingTestConfig.class, AdminOrderFeed.class})
+public class AdminOrderFeedTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private AdminOrderFeed adminOrderFeed;
+
+    @SpyBean
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @SpyBean
+    private OrderTrackingService orderTrackingService;
+
+    @MockBean
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @MockBean
+    private SimpUserRegistry userRegistry;
+
+    private Customer customer;
+    private Router router;
+
+    @BeforeEach
+    public void setup() {
+        // An admin screen is subscribed to the topic
+        when(userRegistry.findSubscriptions(any())).thenReturn(Set.of(mock(SimpSubscription.class)));
+        customer = fixtures.customer("Feed Customer");
+        router = fixtures.router("Feed Router");
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testOrderWithTrackingIsOneCreatedEventAfterCommit() {
+        OrderWithTracking created = orderService.saveOrderWithTracking(request());
+
+        List<OrderQueueEvent> events = sentEvents(1);
+        OrderQueueEvent event = events.get(0);
+        assertEquals(OrderQueueEvent.Type.CREATED, event.getType());
+        assertEquals(created.getOrder().getRouterOrderID(), event.getOrderId());
+        assertEquals("Pending", event.getOrder().getStatus());
+        assertEquals(created.getTracking().getReferenceNumber(), event.getOrder().getTrackingReference());
+    }
+
+    @Test
+    public void testStatusChangeFollowsSnapshotSequence() {
+        OrderWithTracking created = orderService.saveOrderWithTracking(request());
+        OrderQueueSnapshot snapshot = adminOrderFeed.snapshot();
+        assertEquals(1, snapshot.getOrders().size());
+
+        orderService.updateOrderStatus(created.getOrder().getRouterOrderID(), "Approved");
+
+        OrderQueueEvent event = sentEvents(2).get(1);
+        assertEquals(OrderQueueEvent.Type.STATUS_CHANGED, event.getType());
+        assertEquals("Approved", event.getOrder().getStatus());
+        assertTrue(event.getSequence() > snapshot.getSequence());
+        assertTrue(adminOrderFeed.snapshot().getOrders().isEmpty());
+    }
+
+    @Test
+    public void testBatchIsPublishedTogetherWithOneLookup() {
+        List<BatchOrderResult> results = orderService.saveOrders(List.of(request(), request(), request()));
+
+        List<OrderQueueEvent> events = sentEvents(3);
+        assertEquals(results.stream().map(BatchOrderResult::getOrderId).toList(),
+                events.stream().map(OrderQueueEvent::getOrderId).toList());
+        assertTrue(events.stream().allMatch(e -> e.getOrder() != null && "N/A".equals(e.getOrder().getTrackingReference())));
+    }
+
+    @Test
+    public void testRolledBackChangeIsNotPublished() {
+        doThrow(new IllegalStateException("tracking insert failed")).when(orderTrackingService).createOrderTracking(any(Order.class));
+
+        assertThrows(IllegalStateException.class, () -> orderService.saveOrderWithTracking(request()));
+
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    public void testNothingIsLoadedWithoutSubscribers() throws Exception {
+        when(userRegistry.findSubscriptions(any())).thenReturn(Set.of());
+
+        orderService.saveOrderWithTracking(request());
+        Thread.sleep(200);
+
+        verify(orderRepository, never()).findAdminOrdersByIds(any());
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    // Sent from the feed's own thread after the commit
+    private List<OrderQueueEvent> sentEvents(int expected) {
+        ArgumentCaptor<OrderQueueEvent> captor = ArgumentCaptor.forClass(OrderQueueEvent.class);
+        verify(messagingTemplate, timeout(5_000).times(expected)).convertAndSend(eq(AdminOrderFeed.TOPIC), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private OrderRequest request() {
+        return fixtures.request(customer, router, "Feed Site", "feed@bt.com");
+    }
+}
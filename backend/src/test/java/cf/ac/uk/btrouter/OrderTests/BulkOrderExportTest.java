@@ -0,0 +1,93 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import cf.ac.uk.btrouter.service.BulkOrderExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({BulkOrderExportService.class, OrderExportRepository.class})
+public class BulkOrderExportTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BulkOrderExportService bulkOrderExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setup() {
+        Customer customer = entityManager.persist(OrderFixtures.newCustomer("BI Customer"));
+        Router router = entityManager.persist(OrderFixtures.newRouter("BI Router"));
+
+        for (int i = 0; i < 2; i++) {
+            Order order = OrderFixtures.newOrder(customer, router, "BT-BI" + i, "bi@bt.com");
+            order.setDhcp(true);
+            order.setSiteName(i == 0 ? "Unit 4, \"North\" Yard" : "Depot");
+            order.setAdditionalInformation(i == 0 ? "Line one\nLine two" : null);
+            order.setOrderDate(LocalDateTime.of(2025, 2, 1, 8, 30));
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    public void testCsvQuotesOnlyWhatNeedsIt() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkOrderExportService.writeCsv(out);
+        String csv = out.toString(StandardCharsets.UTF_8);
+
+        assertTrue(csv.startsWith("id,reference_number,router_name,preset_name,customer_name,"));
+        assertTrue(csv.contains(",BT-BI0,BI Router,,BI Customer,FTTP,,ETHERNET,UNSPECIFIED,true,1,\"Unit 4, \"\"North\"\" Yard\","));
+        assertTrue(csv.contains(",\"Line one\nLine two\",2025-02-01T08:30\r\n"));
+        assertTrue(csv.contains(",BT-BI1,BI Router,,BI Customer,FTTP,,ETHERNET,UNSPECIFIED,true,1,Depot,"));
+        // Header plus one line per order; the embedded line break is inside quotes
+        assertEquals(3, csv.split("\r\n").length);
+    }
+
+    @Test
+    public void testNdjsonHasOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkOrderExportService.writeNdjson(out);
+        String body = out.toString(StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+
+        assertEquals(2, lines.length);
+        // Every line is a bare object: no separator before it, a newline after the last
+        assertTrue(lines[0].startsWith("{\"id\":"), lines[0]);
+        assertTrue(lines[1].startsWith("{\"id\":"), lines[1]);
+        assertTrue(body.endsWith("}\n"));
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("BT-BI0", first.get("referenceNumber").asText());
+        assertEquals("Line one\nLine two", first.get("additionalInformation").asText());
+        assertEquals("2025-02-01T08:30:00", first.get("orderDate").asText());
+        assertTrue(first.get("presetName").isNull());
+        assertEquals("BI Customer", first.get("customerName").asText());
+        assertEquals("BT-BI1", objectMapper.readTree(lines[1]).get("referenceNumber").asText());
+    }
+}
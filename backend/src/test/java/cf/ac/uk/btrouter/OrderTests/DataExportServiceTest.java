@@ -0,0 +1,126 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.model.User;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import cf.ac.uk.btrouter.service.DataExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DataExportService.class, OrderExportRepository.class})
+public class DataExportServiceTest {
+
+    private static final int ORDERS = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DataExportService dataExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setup() {
+        User user = new User();
+        user.setEmail("gdpr@bt.com");
+        user.setPassword("Password1!");
+        user.setFirstName("Grace");
+        user.setLastName("Hopper");
+        user.setRole(User.Role.USER);
+        user.setBillingAddress("1 Main Street, Cardiff");
+        entityManager.persist(user);
+
+        Customer customer = entityManager.persist(OrderFixtures.newCustomer("Hopper Ltd"));
+        Router router = entityManager.persist(OrderFixtures.newRouter("GDPR Router"));
+
+        for (int i = 0; i < ORDERS + 1; i++) {
+            // The last order belongs to someone else
+            Order order = OrderFixtures.newOrder(customer, router, String.format("BT-GDPR%03d", i),
+                    i < ORDERS ? "gdpr@bt.com" : "other@bt.com");
+            order.setNumRouters(2);
+            order.setSiteName("Site \"" + i + "\"");
+            order.setPriorityLevel("Low");
+            order.setOrderDate(LocalDateTime.of(2025, 4, 1, 12, 0).plusHours(i));
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    @Test
+    public void testCsvHasProfileAndEscapedOrders() throws Exception {
+        Statistics statistics = statistics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dataExportService.exportUserData("gdpr@bt.com", out, DataExportService.Format.CSV);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+
+        assertEquals("=== USER DETAILS ===", lines[0]);
+        assertEquals("gdpr@bt.com,Grace,Hopper,,,,\"1 Main Street, Cardiff\",false,false,false,false", lines[2]);
+        assertEquals("", lines[3]);
+        assertEquals("=== ORDER HISTORY ===", lines[4]);
+        assertEquals(6 + ORDERS, lines.length);
+        assertEquals("BT-GDPR000,GDPR Router,Hopper Ltd,2,\"Site \"\"0\"\"\",1 Queen Street,CF10 2BH,gdpr@bt.com,,02920000000,Ops,Low,2025-04-01T12:00",
+                lines[6]);
+        // Only the user lookup goes through JPA; orders are one JDBC query whatever their number
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testJsonStreamsOrdersArray() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dataExportService.exportUserData("gdpr@bt.com", out, DataExportService.Format.JSON);
+        JsonNode export = objectMapper.readTree(out.toByteArray());
+
+        assertEquals("Grace", export.get("user").get("firstName").asText());
+        assertNull(export.get("user").get("password"));
+        assertEquals(ORDERS, export.get("orders").size());
+        JsonNode first = export.get("orders").get(0);
+        assertEquals("BT-GDPR000", first.get("referenceNumber").asText());
+        assertEquals("Hopper Ltd", first.get("customerName").asText());
+        assertEquals("GDPR Router", first.get("routerName").asText());
+    }
+
+    @Test
+    public void testUnknownUserFailsBeforeWriting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(RuntimeException.class,
+                () -> dataExportService.exportUserData("nobody@bt.com", out, DataExportService.Format.CSV));
+        assertEquals(0, out.size());
+    }
+}
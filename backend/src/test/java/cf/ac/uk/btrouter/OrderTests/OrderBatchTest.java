@@ -0,0 +1,121 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.BatchOrderResult;
+import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderBatchRepository;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import cf.ac.uk.btrouter.service.ReferenceDataCache;
+import cf.ac.uk.btrouter.service.ReferenceNodeLease;
+import cf.ac.uk.btrouter.service.TimeBasedReferenceNumberGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({OrderService.class, OrderBatchRepository.class, TimeBasedReferenceNumberGenerator.class,
+        ReferenceNodeLease.class, ReferenceDataCache.class, SimpleMeterRegistry.class, OrderFixtures.class})
+public class OrderBatchTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @MockBean
+    private OrderTrackingService orderTrackingService;
+
+    @MockBean
+    private AdminOrderFeed adminOrderFeed;
+
+    private Customer customer;
+    private Router router;
+
+    @BeforeEach
+    public void setup() {
+        customer = entityManager.persist(OrderFixtures.newCustomer("Acme"));
+        router = entityManager.persist(OrderFixtures.newRouter("Virtual Access GW1042M"));
+        entityManager.flush();
+    }
+
+    @Test
+    public void testBatchInsertsValidItemsAndReportsInvalidOnes() {
+        List<OrderRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(request("Site " + i));
+        }
+        requests.get(10).setCustomerId(999L);
+        requests.get(20).setSiteName(" ");
+        requests.get(30).setVlans("NOT_A_VLAN");
+
+        List<BatchOrderResult> results = orderService.saveOrders(requests);
+
+        assertEquals(200, results.size());
+        assertEquals(197, results.stream().filter(BatchOrderResult::isSuccess).count());
+        assertEquals("Customer not found", results.get(10).getError());
+        assertEquals("siteName is required", results.get(20).getError());
+        assertEquals("Invalid VLAN type: NOT_A_VLAN", results.get(30).getError());
+
+        // Generated ids line up with the request positions
+        BatchOrderResult result = results.get(150);
+        assertEquals(150, result.getIndex());
+        entityManager.clear();
+        Order saved = orderRepository.findById(result.getOrderId()).orElseThrow();
+        assertEquals("Site 150", saved.getSiteName());
+        assertEquals(result.getReferenceNumber(), saved.getReferenceNumber());
+        assertEquals("Pending", saved.getStatus());
+        assertEquals("Acme", saved.getCustomer().getCustomerName());
+        assertEquals(197, orderRepository.count());
+    }
+
+    @Test
+    public void testWarmSingleOrderIsOneStatement() {
+        orderService.saveOrder(request("Warm-up"));
+        entityManager.flush();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        orderService.saveOrder(request("Steady state"));
+        entityManager.flush();
+
+        // Customer and router come from the reference cache; only the insert reaches the database
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+    }
+
+    private OrderRequest request(String siteName) {
+        return fixtures.request(customer, router, siteName, "integration@bt.com");
+    }
+}
@@ -0,0 +1,106 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.model.RouterPreset;
+import cf.ac.uk.btrouter.repository.CustomerRepository;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.repository.OrderStatusEventRepository;
+import cf.ac.uk.btrouter.repository.OrderTrackingRepository;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import cf.ac.uk.btrouter.repository.RouterRepository;
+
+import java.util.List;
+
+// Order test data. The static builders return unsaved entities for tests that persist through a
+// TestEntityManager; the instance methods commit through the repositories, for tests that run
+// outside a test transaction, and remove it all again afterwards.
+public class OrderFixtures {
+
+    private final CustomerRepository customerRepository;
+    private final RouterRepository routerRepository;
+    private final OrderRepository orderRepository;
+    private final OrderTrackingRepository orderTrackingRepository;
+    private final OrderStatusEventRepository orderStatusEventRepository;
+    private final OutboxEventRepository outboxEventRepository;
+
+    public OrderFixtures(CustomerRepository customerRepository, RouterRepository routerRepository,
+                         OrderRepository orderRepository, OrderTrackingRepository orderTrackingRepository,
+                         OrderStatusEventRepository orderStatusEventRepository,
+                         OutboxEventRepository outboxEventRepository) {
+        this.customerRepository = customerRepository;
+        this.routerRepository = routerRepository;
+        this.orderRepository = orderRepository;
+        this.orderTrackingRepository = orderTrackingRepository;
+        this.orderStatusEventRepository = orderStatusEventRepository;
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    public static Customer newCustomer(String name) {
+        return new Customer(null, name);
+    }
+
+    public static Router newRouter(String name) {
+        Router router = new Router();
+        router.setRouterName(name);
+        router.setOutsideConnectionTypes(List.of("FTTP"));
+        router.setInsideConnectionTypes(List.of("ETHERNET"));
+        router.setEthernetPorts((short) 4);
+        return router;
+    }
+
+    // A complete order for the router above; tests set only the fields they check
+    public static Order newOrder(Customer customer, Router router, String referenceNumber, String email) {
+        Order order = new Order();
+        order.setReferenceNumber(referenceNumber);
+        order.setCustomer(customer);
+        order.setRouter(router);
+        order.setPrimaryOutsideConnections("FTTP");
+        order.setInsideConnections("ETHERNET");
+        order.setVlans(RouterPreset.VlanType.UNSPECIFIED);
+        order.setSiteName("Site");
+        order.setSiteAddress("1 Queen Street");
+        order.setSitePostcode("CF10 2BH");
+        order.setSitePrimaryEmail(email);
+        order.setSitePhoneNumber("02920000000");
+        order.setSiteContactName("Ops");
+        order.setPriorityLevel("High");
+        return order;
+    }
+
+    public Customer customer(String name) {
+        return customerRepository.save(newCustomer(name));
+    }
+
+    public Router router(String name) {
+        return routerRepository.save(newRouter(name));
+    }
+
+    public OrderRequest request(Customer customer, Router router, String siteName, String email) {
+        OrderRequest request = new OrderRequest();
+        request.setCustomerId(customer.getCustomerID());
+        request.setRouterId(router.getRouterID());
+        request.setPrimaryOutsideConnections("FTTP");
+        request.setInsideConnections("ETHERNET");
+        request.setVlans("UNSPECIFIED");
+        request.setSiteName(siteName);
+        request.setSiteAddress("1 Queen Street");
+        request.setSitePostcode("CF10 2BH");
+        request.setSitePrimaryEmail(email);
+        request.setSitePhoneNumber("02920000000");
+        request.setSiteContactName("Ops");
+        request.setPriorityLevel("High");
+        return request;
+    }
+
+    public void cleanUp() {
+        orderStatusEventRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        orderTrackingRepository.deleteAll();
+        orderRepository.deleteAll();
+        routerRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+}
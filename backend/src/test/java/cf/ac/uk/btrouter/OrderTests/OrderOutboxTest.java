@@ -0,0 +1,160 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import cf.ac.uk.btrouter.service.EmailService;
+import cf.ac.uk.btrouter.service.NewsService;
+import cf.ac.uk.btrouter.service.OrderEventDispatcher;
+import cf.ac.uk.btrouter.service.OrderEventOutbox;
+import cf.ac.uk.btrouter.service.OutboxRelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// The relay works on committed rows from its own threads, so these tests commit for real
+@DataJpaTest(properties = "outbox.retry-backoff-ms=0")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({OrderEventOutbox.class, OrderEventDispatcher.class, OutboxRelay.class, SimpleMeterRegistry.class,
+        OrderFixtures.class})
+public class OrderOutboxTest {
+
+    @Autowired
+    private OrderEventOutbox orderEventOutbox;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private EmailService emailService;
+
+    @MockBean
+    private NewsService newsService;
+
+    private TransactionTemplate transaction;
+    private Order order;
+
+    @BeforeEach
+    public void setup() {
+        transaction = new TransactionTemplate(transactionManager);
+
+        order = orderRepository.save(OrderFixtures.newOrder(fixtures.customer("Outbox Customer"),
+                fixtures.router("Outbox Router"), "BT-OUTBOX", "site@bt.com"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testEventsOnlyExistWithTheirTransaction() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> orderEventOutbox.cancelled(order.getRouterOrderID(), "BT-OUTBOX"));
+
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            orderEventOutbox.cancelled(order.getRouterOrderID(), "BT-OUTBOX");
+            throw new IllegalStateException("rolled back");
+        }));
+
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    public void testRelayDeliversStatusChangeAndAnnouncesOnce() throws Exception {
+        transaction.executeWithoutResult(status ->
+                orderEventOutbox.statusChanged(order.getRouterOrderID(), "BT-OUTBOX", "CONFIRMED", true));
+
+        assertEquals(1, outboxRelay.dispatchDue());
+        OutboxEvent event = await(e -> e.getDispatchedAt() != null);
+
+        assertEquals(1, event.getAttempts());
+        verify(emailService).sendOrderStatusUpdateEmail("site@bt.com", "BT-OUTBOX", "CONFIRMED");
+        verify(newsService).createPost(eq("Router Request Status Updated"), contains("BT-OUTBOX"), anyString());
+        assertEquals(0, outboxRelay.dispatchDue());
+    }
+
+    @Test
+    public void testFailedDeliveryIsRetriedWithoutRepeatingTheNewsPost() throws Exception {
+        doThrow(new MailSendException("SMTP down")).doNothing()
+                .when(emailService).sendOrderStatusUpdateEmail(anyString(), anyString(), anyString());
+        transaction.executeWithoutResult(status ->
+                orderEventOutbox.statusChanged(order.getRouterOrderID(), "BT-OUTBOX", "IN_TRANSIT", true));
+
+        outboxRelay.dispatchDue();
+        OutboxEvent failed = await(e -> e.getAttempts() == 1);
+        assertNull(failed.getDispatchedAt());
+        assertEquals("SMTP down", failed.getLastError());
+        assertFalse(failed.isAnnounce());
+
+        outboxRelay.dispatchDue();
+        OutboxEvent delivered = await(e -> e.getDispatchedAt() != null);
+
+        assertEquals(2, delivered.getAttempts());
+        verify(emailService, times(2)).sendOrderStatusUpdateEmail("site@bt.com", "BT-OUTBOX", "IN_TRANSIT");
+        verify(newsService, times(1)).createPost(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testDispatchedEventsArePurgedAfterRetention() throws Exception {
+        transaction.executeWithoutResult(status -> orderEventOutbox.orderCreated(order.getRouterOrderID(), "BT-OUTBOX"));
+        outboxRelay.dispatchDue();
+        await(e -> e.getDispatchedAt() != null);
+
+        outboxEventRepository.markDispatched(outboxEventRepository.findAll().get(0).getId(),
+                LocalDateTime.now().minusDays(30));
+
+        assertEquals(1, outboxRelay.purgeDispatched());
+        verify(emailService).sendOrderConfirmationEmail(eq("site@bt.com"), eq("BT-OUTBOX"), any(Order.class));
+    }
+
+    // Relay threads finish asynchronously; poll the table for the expected state
+    private OutboxEvent await(Predicate<OutboxEvent> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            List<OutboxEvent> events = outboxEventRepository.findAll();
+            if (events.size() == 1 && condition.test(events.get(0))) {
+                return events.get(0);
+            }
+            Thread.sleep(20);
+        }
+        fail("Outbox event did not reach the expected state");
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderFilter;
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.OrderTracking;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.model.RouterPreset;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Guards the order list and detail queries against going back to one extra select per row
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+public class OrderQueryCountTest {
+
+    private static final int ORDERS = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Statistics statistics;
+    private Long presetOrderId;
+
+    @BeforeEach
+    public void setup() {
+        Customer customer = entityManager.persist(OrderFixtures.newCustomer("Acme"));
+        Router router = entityManager.persist(OrderFixtures.newRouter("Virtual Access GW1042M"));
+
+        RouterPreset preset = new RouterPreset();
+        preset.setRouter(router);
+        preset.setCustomer(customer);
+        preset.setRouterPresetName("Branch default");
+        preset.setPrimaryOutsideConnections("FTTP");
+        preset.setInsideConnections("ETHERNET");
+        preset.setNumberOfEthernetPorts((short) 2);
+        preset.setVlans(RouterPreset.VlanType.UNSPECIFIED);
+        entityManager.persist(preset);
+
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = OrderFixtures.newOrder(customer, router, String.format("BT-QUERY%03d", i),
+                    i < 10 ? "history@bt.com" : "site" + i + "@bt.com");
+            order.setRouterPreset(i == 0 ? preset : null);
+            order.setPriorityLevel(i % 2 == 0 ? "High" : "Low");
+            order.setOrderDate(start.plusMinutes(i));
+            entityManager.persist(order);
+            if (i == 0) {
+                presetOrderId = order.getRouterOrderID();
+            }
+
+            // Leave every fifth order without tracking
+            if (i % 5 != 0) {
+                OrderTracking tracking = new OrderTracking();
+                tracking.setRouterOrderID(order.getRouterOrderID());
+                tracking.setReferenceNumber("TRK-" + i);
+                tracking.setStatus("PENDING");
+                entityManager.persist(tracking);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testAdminOrderListIsOneQuery() {
+        List<AdminOrderDTO> orders = orderRepository.findAllAdminOrders();
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals("N/A", orders.get(0).getTrackingReference());
+        assertEquals("TRK-1", orders.get(1).getTrackingReference());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testPendingOrderListIsOneQuery() {
+        List<AdminOrderDTO> orders = orderRepository.findAdminOrdersByStatus("Pending");
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testOrderPageIsOneQuery() {
+        OrderFilter filter = OrderFilter.builder().priorityLevel("High").build();
+
+        List<AdminOrderDTO> page = orderRepository.findPage(filter, null, false, 10);
+
+        assertEquals(10, page.size());
+        assertEquals("site48@bt.com", page.get(0).getSitePrimaryEmail());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testOrderHistoryIsOneQuery() {
+        List<OrderSummaryDTO> history = orderRepository.findOrderSummariesByEmail("history@bt.com");
+
+        assertEquals(10, history.size());
+        assertEquals("Acme", history.get(0).customer().customerName());
+        assertEquals("Virtual Access GW1042M", history.get(0).router().routerName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testOrderDetailLoadsGraphInOneQuery() {
+        Order order = orderRepository.findOrderByIdAndEmail(presetOrderId, "history@bt.com");
+
+        assertEquals("Acme", order.getCustomer().getCustomerName());
+        assertEquals("Branch default", order.getRouterPreset().getRouterPresetName());
+        assertEquals("Acme", order.getRouterPreset().getCustomer().getCustomerName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
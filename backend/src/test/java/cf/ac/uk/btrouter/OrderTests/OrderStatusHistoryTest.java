@@ -0,0 +1,130 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.dto.StageDurationStats;
+import cf.ac.uk.btrouter.model.OrderStatusEvent;
+import cf.ac.uk.btrouter.repository.OrderStatusEventRepository;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderStatusHistoryService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Commits for real so a rolled back transition can be checked for a missing history row
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderTrackingTestConfig.class)
+public class OrderStatusHistoryTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    @Autowired
+    private OrderStatusHistoryService orderStatusHistoryService;
+
+    @Autowired
+    private OrderStatusEventRepository orderStatusEventRepository;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @MockBean
+    private AdminOrderFeed adminOrderFeed;
+
+    private OrderWithTracking created;
+
+    @BeforeEach
+    public void setup() {
+        orderStatusEventRepository.deleteAll();
+        created = orderService.saveOrderWithTracking(fixtures.request(
+                fixtures.customer("History Customer"), fixtures.router("History Router"), "History Site", "history@bt.com"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testEveryTransitionIsAppended() {
+        Long orderId = created.getOrder().getRouterOrderID();
+        String reference = created.getTracking().getReferenceNumber();
+
+        orderTrackingService.updateOrderStatusByOrderId(orderId, "CONFIRMED", false);
+        orderTrackingService.updateOrderStatus(reference, "CONFIRMED");
+        orderTrackingService.updateOrderStatus(reference, "IN_PRODUCTION");
+
+        List<OrderStatusEvent> timeline = orderStatusHistoryService.getTimeline(orderId);
+        assertEquals(List.of("PENDING", "CONFIRMED", "IN_PRODUCTION"),
+                timeline.stream().map(OrderStatusEvent::getToStatus).toList());
+        assertNull(timeline.get(0).getFromStatus());
+        assertNull(timeline.get(0).getDurationMs());
+        assertEquals("CONFIRMED", timeline.get(2).getFromStatus());
+        assertNotNull(timeline.get(2).getDurationMs());
+        assertTrue(timeline.get(2).getDurationMs() >= 0);
+    }
+
+    @Test
+    public void testRejectedCancellationLeavesNoHistory() {
+        String reference = created.getTracking().getReferenceNumber();
+        orderTrackingService.updateOrderStatus(reference, "DELIVERED");
+
+        assertThrows(RuntimeException.class, () -> orderTrackingService.cancelOrder(reference));
+
+        assertEquals(2, orderStatusHistoryService.getTimeline(created.getOrder().getRouterOrderID()).size());
+    }
+
+    @Test
+    public void testStageDurationPercentilesCoverOnlyTheWindow() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<OrderStatusEvent> events = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            events.add(new OrderStatusEvent(i, "BT-" + i, "QUALITY_CHECK", "READY_FOR_SHIPPING",
+                    from.plusHours(i), i * 1000));
+        }
+        // Outside the window, and a different stage
+        events.add(new OrderStatusEvent(101L, "BT-101", "QUALITY_CHECK", "READY_FOR_SHIPPING", from.minusDays(1), 999_000L));
+        events.add(new OrderStatusEvent(102L, "BT-102", "IN_TRANSIT", "DELIVERED", from.plusHours(1), 5L));
+        events.add(new OrderStatusEvent(103L, "BT-103", "CONFIRMED", "QUALITY_CHECK", from.plusHours(2), 7L));
+        orderStatusEventRepository.saveAll(events);
+
+        StageDurationStats stats = orderStatusHistoryService.getStageDurations("QUALITY_CHECK", from, from.plusDays(30));
+
+        assertEquals(1, stats.getEntered());
+        assertEquals(100, stats.getTransitions());
+        assertEquals(50_000L, stats.getP50Ms());
+        assertEquals(90_000L, stats.getP90Ms());
+        assertEquals(95_000L, stats.getP95Ms());
+        assertEquals(99_000L, stats.getP99Ms());
+        assertEquals(100_000L, stats.getMaxMs());
+    }
+
+    @Test
+    public void testStageDurationWindowIsCapped() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> orderStatusHistoryService.getStageDurations("PENDING", from, from.plusYears(1)));
+        assertNull(orderStatusHistoryService.getStageDurations("PENDING", from, from.plusDays(1)).getP50Ms());
+    }
+}
@@ -0,0 +1,25 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.repository.OrderBatchRepository;
+import cf.ac.uk.btrouter.service.OrderEventOutbox;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderStatusHistoryService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import cf.ac.uk.btrouter.service.ReferenceDataCache;
+import cf.ac.uk.btrouter.service.ReferenceNodeLease;
+import cf.ac.uk.btrouter.service.TimeBasedReferenceNumberGenerator;
+import cf.ac.uk.btrouter.service.TrackingUpdateBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+// The order and tracking services on top of a @DataJpaTest slice. New dependencies of these
+// services are added here rather than to each test. AdminOrderFeed is left out: tests either
+// mock it or import it themselves.
+@TestConfiguration
+@Import({OrderService.class, OrderTrackingService.class, OrderEventOutbox.class, OrderBatchRepository.class,
+        TimeBasedReferenceNumberGenerator.class, ReferenceNodeLease.class, ReferenceDataCache.class,
+        TrackingUpdateBroadcaster.class, OrderStatusHistoryService.class, SimpleMeterRegistry.class,
+        OrderFixtures.class})
+public class OrderTrackingTestConfig {
+}
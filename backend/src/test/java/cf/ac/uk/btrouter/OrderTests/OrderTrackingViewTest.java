@@ -0,0 +1,110 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import cf.ac.uk.btrouter.service.TrackingUpdateBroadcaster;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Commits for real so eviction is checked after the status change is visible
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderTrackingTestConfig.class)
+public class OrderTrackingViewTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @SpyBean
+    private TrackingUpdateBroadcaster trackingUpdateBroadcaster;
+
+    @MockBean
+    private AdminOrderFeed adminOrderFeed;
+
+    private Statistics statistics;
+    private OrderWithTracking created;
+
+    @BeforeEach
+    public void setup() {
+        created = orderService.saveOrderWithTracking(fixtures.request(
+                fixtures.customer("View Customer"), fixtures.router("View Router"), "View Site", "view@bt.com"));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testViewIsOneQueryThenServedFromCache() {
+        String reference = created.getTracking().getReferenceNumber();
+
+        OrderTrackingService.TrackingSnapshot first = orderTrackingService.getTrackingSnapshot(reference).orElseThrow();
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        OrderTrackingDTO view = first.view();
+        assertEquals(reference, view.getReferenceNumber());
+        assertEquals("PENDING", view.getStatus());
+        assertEquals("View Router", view.getRouterName());
+        assertEquals("View Customer", view.getCustomerName());
+        assertEquals("UNSPECIFIED", view.getVlanType());
+        assertEquals("View Site", view.getSiteName());
+
+        OrderTrackingService.TrackingSnapshot again = orderTrackingService.getTrackingSnapshot(reference.toLowerCase()).orElseThrow();
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(first.etag(), again.etag());
+    }
+
+    @Test
+    public void testStatusChangeEvictsCachedViewAndNotifiesStreams() {
+        String reference = created.getTracking().getReferenceNumber();
+        String etag = orderTrackingService.getTrackingSnapshot(reference).orElseThrow().etag();
+
+        orderTrackingService.updateOrderStatusByOrderId(created.getOrder().getRouterOrderID(), "CONFIRMED", false);
+
+        OrderTrackingService.TrackingSnapshot updated = orderTrackingService.getTrackingSnapshot(reference).orElseThrow();
+        assertEquals("CONFIRMED", updated.view().getStatus());
+        assertFalse(updated.view().isCanCancel());
+        assertNotEquals(etag, updated.etag());
+        verify(trackingUpdateBroadcaster).publish(eq(reference), any());
+    }
+
+    @Test
+    public void testUnknownReferenceIsEmpty() {
+        assertTrue(orderTrackingService.getTrackingSnapshot("BT-MISSING").isEmpty());
+    }
+}
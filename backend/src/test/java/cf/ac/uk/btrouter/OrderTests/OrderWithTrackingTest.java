@@ -0,0 +1,154 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.dto.BatchOrderResult;
+import cf.ac.uk.btrouter.dto.OrderRequest;
+import cf.ac.uk.btrouter.dto.OrderWithTracking;
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.OutboxEvent;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.repository.OrderStatusEventRepository;
+import cf.ac.uk.btrouter.repository.OrderTrackingRepository;
+import cf.ac.uk.btrouter.repository.OutboxEventRepository;
+import cf.ac.uk.btrouter.service.AdminOrderFeed;
+import cf.ac.uk.btrouter.service.OrderService;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Commits for real so a failure part-way through can be checked for a full rollback
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderTrackingTestConfig.class)
+public class OrderWithTrackingTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OrderStatusEventRepository orderStatusEventRepository;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @SpyBean
+    private OrderTrackingService orderTrackingService;
+
+    @MockBean
+    private AdminOrderFeed adminOrderFeed;
+
+    private Customer customer;
+    private Router router;
+
+    @BeforeEach
+    public void setup() {
+        customer = fixtures.customer("Tracking Customer");
+        router = fixtures.router("Tracking Router");
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testOrderAndTrackingAreCreatedTogether() {
+        OrderWithTracking created = orderService.saveOrderWithTracking(request());
+
+        String reference = created.getOrder().getReferenceNumber();
+        assertEquals(reference, created.getTracking().getReferenceNumber());
+        assertEquals("PENDING", orderTrackingRepository.findByReferenceNumber(reference).orElseThrow().getStatus());
+        assertEquals(created.getOrder().getRouterOrderID(), created.getTracking().getRouterOrderID());
+
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(OutboxEvent.Type.ORDER_CREATED, events.get(0).getType());
+    }
+
+    @Test
+    public void testFailureAfterOrderInsertRollsBackBoth() {
+        doThrow(new IllegalStateException("tracking insert failed")).when(orderTrackingService).createOrderTracking(any(Order.class));
+
+        assertThrows(IllegalStateException.class, () -> orderService.saveOrderWithTracking(request()));
+
+        assertEquals(0, orderRepository.count());
+        assertEquals(0, orderTrackingRepository.count());
+    }
+
+    @Test
+    public void testBatchWithTrackingTracksEachCreatedOrder() {
+        OrderRequest invalid = request();
+        invalid.setCustomerId(999L);
+
+        List<BatchOrderResult> results = orderService.saveOrders(List.of(request(), invalid, request()), true);
+
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).getTrackingReference());
+        for (BatchOrderResult result : List.of(results.get(0), results.get(2))) {
+            assertEquals(result.getReferenceNumber(), result.getTrackingReference());
+            assertEquals(result.getOrderId(),
+                    orderTrackingRepository.findByReferenceNumber(result.getTrackingReference()).orElseThrow().getRouterOrderID());
+        }
+        assertEquals(2, orderTrackingRepository.count());
+        assertEquals(2, orderStatusEventRepository.count());
+        assertTrue(outboxEventRepository.findAll().stream()
+                .allMatch(event -> event.getType() == OutboxEvent.Type.ORDER_CREATED));
+        assertEquals(2, outboxEventRepository.count());
+    }
+
+    @Test
+    public void testBatchWithoutTrackingCreatesNoTracking() {
+        List<BatchOrderResult> results = orderService.saveOrders(List.of(request(), request()), false);
+
+        assertTrue(results.stream().allMatch(BatchOrderResult::isSuccess));
+        assertNull(results.get(0).getTrackingReference());
+        assertEquals(0, orderTrackingRepository.count());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    public void testBatchTrackingFailureRollsBackTheWholeBatch() {
+        doCallRealMethod()
+                .doThrow(new IllegalStateException("tracking insert failed"))
+                .when(orderTrackingService).createOrderTracking(any(Order.class));
+
+        assertThrows(IllegalStateException.class,
+                () -> orderService.saveOrders(List.of(request(), request()), true));
+
+        assertEquals(0, orderRepository.count());
+        assertEquals(0, orderTrackingRepository.count());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    private OrderRequest request() {
+        return fixtures.request(customer, router, "Tracked Site", "tracked@bt.com");
+    }
+}
@@ -0,0 +1,100 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Workbooks are built on pool threads with their own connections, so the orders must really be committed
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {"spreadsheet.export.row-window=20", "spreadsheet.export.bundle-threads=3"})
+@Import({SpreadsheetGenerationService.class, OrderExportRepository.class, OrderFixtures.class})
+public class SpreadsheetBundleTest {
+
+    private static final int CUSTOMERS = 12;
+    private static final int ORDERS_PER_CUSTOMER = 30;
+
+    @Autowired
+    private SpreadsheetGenerationService spreadsheetService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @BeforeEach
+    public void setup() {
+        Customer customer = fixtures.customer("Bundle Customer");
+        Router router = fixtures.router("Bundle Router");
+
+        List<Order> orders = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            for (int i = 0; i < ORDERS_PER_CUSTOMER; i++) {
+                orders.add(OrderFixtures.newOrder(customer, router,
+                        String.format("BT-BUNDLE%02d%03d", c, i), "customer" + c + "@bt.com"));
+            }
+        }
+        orderRepository.saveAll(orders);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        fixtures.cleanUp();
+    }
+
+    @Test
+    public void testBundleHasOneWorkbookPerCustomer() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spreadsheetService.writeCustomerBundle(out);
+
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+
+        assertEquals(CUSTOMERS, entries.size());
+        for (int c = 0; c < CUSTOMERS; c++) {
+            byte[] workbook = entries.get("customer" + c + "@bt.com.xlsx");
+            assertNotNull(workbook, "missing workbook for customer " + c);
+            try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(workbook))) {
+                assertEquals(1, wb.getNumberOfSheets());
+                Sheet sheet = wb.getSheet("customer" + c + "@bt.com");
+                assertEquals(ORDERS_PER_CUSTOMER, sheet.getLastRowNum());
+                assertEquals(String.format("BT-BUNDLE%02d000", c), sheet.getRow(1).getCell(0).getStringCellValue());
+            }
+        }
+    }
+}
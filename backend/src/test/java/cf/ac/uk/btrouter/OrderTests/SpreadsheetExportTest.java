@@ -0,0 +1,150 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = "spreadsheet.export.row-window=50")
+@Import({SpreadsheetGenerationService.class, OrderExportRepository.class})
+public class SpreadsheetExportTest {
+
+    private static final int ORDERS = 2_000;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SpreadsheetGenerationService spreadsheetService;
+
+    private Customer customer;
+    private Router router;
+
+    @BeforeEach
+    public void setup() {
+        customer = entityManager.persist(OrderFixtures.newCustomer("Export Customer"));
+        router = entityManager.persist(OrderFixtures.newRouter("Export Router"));
+
+        for (int i = 0; i < ORDERS; i++) {
+            persistOrder(i, i % 4 == 0 ? "first@bt.com" : "second@bt.com");
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void persistOrder(int i, String email) {
+        Order order = OrderFixtures.newOrder(customer, router, String.format("BT-EXPORT%05d", i), email);
+        order.setDhcp(i % 2 == 0);
+        order.setNumRouters(1 + i % 3);
+        order.setSiteName("Site " + i);
+        order.setOrderDate(LocalDateTime.of(2025, 1, 1, 9, 0).plusMinutes(i));
+        entityManager.persist(order);
+    }
+
+    @Test
+    public void testStreamedWorkbookHasEveryOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spreadsheetService.write(out, false);
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(1, wb.getNumberOfSheets());
+            Sheet sheet = wb.getSheet("Full orders");
+            assertEquals(ORDERS, sheet.getLastRowNum());
+            assertEquals("Reference Number", sheet.getRow(0).getCell(0).getStringCellValue());
+
+            Row last = sheet.getRow(ORDERS);
+            assertEquals("BT-EXPORT01999", last.getCell(0).getStringCellValue());
+            assertEquals("Export Router", last.getCell(2).getStringCellValue());
+            assertEquals("None", last.getCell(3).getStringCellValue());
+            assertEquals("No", last.getCell(8).getStringCellValue());
+            assertEquals(2.0, last.getCell(9).getNumericCellValue());
+            assertEquals("2025-01-02T18:19", last.getCell(20).getStringCellValue());
+
+            // Widths come from the longest value in each column (header included) plus padding
+            assertEquals(("Reference Number".length() + 2) * 256, sheet.getColumnWidth(0));
+            assertEquals(("2025-01-02T18:19".length() + 2) * 256, sheet.getColumnWidth(20));
+        }
+        assertFalse(new File("orders.xlsx").exists());
+    }
+
+    @Test
+    public void testSeparateSheetsPerCustomer() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spreadsheetService.write(out, true);
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(3, wb.getNumberOfSheets());
+            assertEquals("Full orders", wb.getSheetName(0));
+            assertEquals(ORDERS, wb.getSheet("Full orders").getLastRowNum());
+
+            // Customer sheets come from the same scan, in email order and oldest order first
+            Sheet first = wb.getSheetAt(1);
+            assertEquals("first@bt.com", first.getSheetName());
+            assertEquals(ORDERS / 4, first.getLastRowNum());
+            assertEquals("BT-EXPORT00000", first.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("BT-EXPORT01996", first.getRow(ORDERS / 4).getCell(0).getStringCellValue());
+            assertEquals("Reference Number", wb.getSheetAt(2).getRow(0).getCell(0).getStringCellValue());
+            assertEquals(ORDERS * 3 / 4, wb.getSheet("second@bt.com").getLastRowNum());
+        }
+    }
+
+    @Test
+    public void testCaseVariantAndLongEmailsGetValidSheetNames() throws Exception {
+        persistOrder(ORDERS, "Case@bt.com");
+        persistOrder(ORDERS + 1, "case@bt.com");
+        // Same first 31 characters, the longest a sheet name can be
+        persistOrder(ORDERS + 2, "long-customer-mailbox-name-0001@first.example.com");
+        persistOrder(ORDERS + 3, "long-customer-mailbox-name-0001@second.example.com");
+        // Characters that are not allowed in sheet names
+        persistOrder(ORDERS + 4, "ops/team?@bt.com");
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spreadsheetService.write(out, true);
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(List.of("Full orders", "Case@bt.com", "first@bt.com", "long-customer-mailbox-name-0001",
+                            "long-customer-mailbox-name- (2)", "ops team @bt.com", "second@bt.com"),
+                    sheetNames(wb));
+            // Both case variants on one sheet
+            assertEquals(2, wb.getSheet("Case@bt.com").getLastRowNum());
+            assertEquals("long-customer-mailbox-name-0001@second.example.com",
+                    wb.getSheet("long-customer-mailbox-name- (2)").getRow(1).getCell(1).getStringCellValue());
+            assertEquals(ORDERS + 5, wb.getSheet("Full orders").getLastRowNum());
+        }
+    }
+
+    private static List<String> sheetNames(XSSFWorkbook wb) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            names.add(wb.getSheetName(i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,123 @@
+package cf.ac.uk.btrouter.OrderTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.Order;
+import cf.ac.uk.btrouter.model.Router;
+import cf.ac.uk.btrouter.repository.OrderExportRepository;
+import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import cf.ac.uk.btrouter.service.SpreadsheetSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({SpreadsheetSnapshotService.class, SpreadsheetGenerationService.class, OrderExportRepository.class})
+public class SpreadsheetSnapshotTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SpreadsheetSnapshotService snapshotService;
+
+    @SpyBean
+    private SpreadsheetGenerationService spreadsheetService;
+
+    private Order order;
+
+    @BeforeEach
+    public void setup() {
+        Customer customer = entityManager.persist(OrderFixtures.newCustomer("Snapshot Customer"));
+        Router router = entityManager.persist(OrderFixtures.newRouter("Snapshot Router"));
+
+        for (int i = 0; i < 3; i++) {
+            order = entityManager.persist(OrderFixtures.newOrder(customer, router, "BT-SNAP" + i, "snapshot@bt.com"));
+        }
+        entityManager.flush();
+        settle();
+    }
+
+    // Changes made within the last seconds are not trusted yet, see SpreadsheetSnapshotService
+    private void settle() {
+        jdbcTemplate.update("UPDATE router_orders SET updated_at = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    @Test
+    public void testUnchangedOrdersReuseTheSnapshot() throws Exception {
+        SpreadsheetSnapshotService.Snapshot first = snapshotService.getSnapshot(false);
+        SpreadsheetSnapshotService.Snapshot second = snapshotService.getSnapshot(false);
+
+        assertSame(first, second);
+        assertTrue(Files.size(first.file()) > 0);
+        verify(spreadsheetService, times(1)).write(any(), anyBoolean());
+    }
+
+    @Test
+    public void testChangedOrderRebuildsWithNewEtag() throws Exception {
+        SpreadsheetSnapshotService.Snapshot first = snapshotService.getSnapshot(false);
+
+        order.setStatus("Approved");
+        entityManager.merge(order);
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE router_orders SET updated_at = ? WHERE router_order_id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusSeconds(30)), order.getRouterOrderID());
+
+        SpreadsheetSnapshotService.Snapshot second = snapshotService.getSnapshot(false);
+        assertNotEquals(first.etag(), second.etag());
+        assertNotEquals(first.file(), second.file());
+        // The replaced file may still be downloading, so it is kept until the next rebuild
+        assertTrue(Files.exists(first.file()));
+        verify(spreadsheetService, times(2)).write(any(), eq(false));
+    }
+
+    @Test
+    public void testNewOrderRebuilds() throws Exception {
+        SpreadsheetSnapshotService.Snapshot first = snapshotService.getSnapshot(false);
+
+        entityManager.remove(entityManager.find(Order.class, order.getRouterOrderID()));
+        entityManager.flush();
+
+        assertNotEquals(first.etag(), snapshotService.getSnapshot(false).etag());
+    }
+
+    @Test
+    public void testRecentChangesAreNotTrusted() throws Exception {
+        jdbcTemplate.update("UPDATE router_orders SET updated_at = ?", Timestamp.valueOf(LocalDateTime.now()));
+
+        snapshotService.getSnapshot(false);
+        snapshotService.getSnapshot(false);
+
+        verify(spreadsheetService, times(2)).write(any(), eq(false));
+    }
+
+    @Test
+    public void testLayoutsHaveSeparateSnapshots() throws Exception {
+        SpreadsheetSnapshotService.Snapshot full = snapshotService.getSnapshot(false);
+        SpreadsheetSnapshotService.Snapshot separate = snapshotService.getSnapshot(true);
+
+        assertNotEquals(full.etag(), separate.etag());
+        assertSame(separate, snapshotService.getSnapshot(true));
+    }
+}
@@ -0,0 +1,185 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.service.ExportJobService;
+import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportJobServiceTest {
+
+    @Mock
+    private SpreadsheetGenerationService spreadsheetService;
+
+    @TempDir
+    private Path directory;
+
+    private ExportJobService exportJobService;
+
+    @AfterEach
+    void tearDown() {
+        if (exportJobService != null) {
+            exportJobService.shutdown();
+        }
+    }
+
+    private ExportJobService createService(int threads, int queueSize, long ttlMs) throws IOException {
+        exportJobService = new ExportJobService(spreadsheetService, threads, queueSize, directory.toString(), ttlMs);
+        return exportJobService;
+    }
+
+    private static ExportJobService.Status awaitFinished(ExportJobService.ExportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getStatus() == ExportJobService.Status.QUEUED || job.getStatus() == ExportJobService.Status.RUNNING) {
+            assertTrue(System.currentTimeMillis() < deadline, "job did not finish");
+            Thread.sleep(10);
+        }
+        return job.getStatus();
+    }
+
+    @Test
+    void submit_WritesFileInBackground() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("workbook".getBytes());
+            return null;
+        }).when(spreadsheetService).write(any(), eq(true));
+        createService(1, 5, 60_000);
+
+        ExportJobService.ExportJob job = exportJobService.submit(ExportJobService.Type.ORDERS_BY_CUSTOMER_SHEET);
+
+        assertEquals(ExportJobService.Status.DONE, awaitFinished(job));
+        assertEquals("workbook", Files.readString(job.getFile()));
+        assertEquals(directory, job.getFile().getParent());
+        assertSame(job, exportJobService.getJob(job.getId()).orElseThrow());
+    }
+
+    @Test
+    void submit_IdenticalRequestsWhileRunningShareOneJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(spreadsheetService).write(any(), eq(false));
+        createService(2, 5, 60_000);
+
+        ExportJobService.ExportJob first = exportJobService.submit(ExportJobService.Type.ORDERS);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ExportJobService.ExportJob second = exportJobService.submit(ExportJobService.Type.ORDERS);
+        assertSame(first, second);
+
+        release.countDown();
+        awaitFinished(first);
+        verify(spreadsheetService, times(1)).write(any(), anyBoolean());
+
+        // Once finished, a new request gets fresh data
+        ExportJobService.ExportJob third = exportJobService.submit(ExportJobService.Type.ORDERS);
+        assertNotEquals(first.getId(), third.getId());
+        awaitFinished(third);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submit_FullQueueIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(spreadsheetService).write(any(), anyBoolean());
+        createService(1, 1, 60_000);
+
+        ExportJobService.ExportJob running = exportJobService.submit(ExportJobService.Type.ORDERS);
+        ExportJobService.ExportJob queued = exportJobService.submit(ExportJobService.Type.ORDERS_BY_CUSTOMER_SHEET);
+
+        assertThrows(ExportJobService.JobQueueFullException.class,
+                () -> exportJobService.submit(ExportJobService.Type.CUSTOMER_BUNDLE));
+        // Anyone who joined the rejected job in the meantime polls a failed job, not an unknown id
+        Map<String, ExportJobService.ExportJob> jobs = (Map<String, ExportJobService.ExportJob>)
+                ReflectionTestUtils.getField(exportJobService, "jobs");
+        ExportJobService.ExportJob rejected = jobs.values().stream()
+                .filter(job -> job.getType() == ExportJobService.Type.CUSTOMER_BUNDLE)
+                .findFirst().orElseThrow();
+        assertEquals(ExportJobService.Status.FAILED, rejected.getStatus());
+        assertEquals("Export queue full", rejected.toStatus().getError());
+
+        release.countDown();
+        assertEquals(ExportJobService.Status.DONE, awaitFinished(running));
+        assertEquals(ExportJobService.Status.DONE, awaitFinished(queued));
+    }
+
+    @Test
+    void submit_FailedExportLeavesNoFile() throws Exception {
+        doThrow(new IOException("disk full")).when(spreadsheetService).writeCustomerBundle(any());
+        createService(1, 5, 60_000);
+
+        ExportJobService.ExportJob job = exportJobService.submit(ExportJobService.Type.CUSTOMER_BUNDLE);
+
+        assertEquals(ExportJobService.Status.FAILED, awaitFinished(job));
+        assertNull(job.getFile());
+        assertEquals("Export failed", job.toStatus().getError());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void removeExpiredJobs_DeletesJobAndFile() throws Exception {
+        createService(1, 5, 0);
+
+        ExportJobService.ExportJob job = exportJobService.submit(ExportJobService.Type.ORDERS);
+        awaitFinished(job);
+        Path file = job.getFile();
+        assertTrue(Files.exists(file));
+
+        exportJobService.removeExpiredJobs();
+
+        assertTrue(exportJobService.getJob(job.getId()).isEmpty());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void startup_RemovesPartialFilesLeftBehind() throws Exception {
+        Path partial = Files.writeString(directory.resolve(UUID.randomUUID() + ".part"), "half a workbook");
+        Path unrelated = Files.writeString(directory.resolve("notes.part"), "not ours");
+
+        createService(1, 5, 60_000);
+
+        assertFalse(Files.exists(partial));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    @Test
+    void removeExpiredJobs_SweepsOrphanedFilesByAge() throws Exception {
+        createService(1, 5, 60_000);
+        // Left by a job this node no longer knows about, e.g. from before a restart
+        Path stale = Files.writeString(directory.resolve(UUID.randomUUID().toString()), "old");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        Path recent = Files.writeString(directory.resolve(UUID.randomUUID().toString()), "new");
+
+        exportJobService.removeExpiredJobs();
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(recent));
+    }
+}
@@ -0,0 +1,91 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.model.Customer;
+import cf.ac.uk.btrouter.model.RouterPreset;
+import cf.ac.uk.btrouter.repository.CustomerRepository;
+import cf.ac.uk.btrouter.repository.RouterPresetRepository;
+import cf.ac.uk.btrouter.repository.RouterRepository;
+import cf.ac.uk.btrouter.service.CustomerService;
+import cf.ac.uk.btrouter.service.ReferenceDataCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReferenceDataCacheTest {
+
+    private CustomerRepository customerRepository;
+    private RouterPresetRepository routerPresetRepository;
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    public void setup() {
+        customerRepository = mock(CustomerRepository.class);
+        routerPresetRepository = mock(RouterPresetRepository.class);
+        cache = new ReferenceDataCache(customerRepository, mock(RouterRepository.class), routerPresetRepository,
+                new SimpleMeterRegistry(), 100, 60_000);
+    }
+
+    @Test
+    public void testRepeatedLookupIsServedFromCache() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer(1L, "Acme")));
+
+        assertEquals("Acme", cache.getCustomer(1L).orElseThrow().getCustomerName());
+        assertEquals("Acme", cache.getCustomer(1L).orElseThrow().getCustomerName());
+
+        verify(customerRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void testUnknownIdIsNotCached() {
+        when(customerRepository.findById(2L)).thenReturn(Optional.empty());
+        assertTrue(cache.getCustomer(2L).isEmpty());
+
+        when(customerRepository.findById(2L)).thenReturn(Optional.of(customer(2L, "Created elsewhere")));
+        assertTrue(cache.getCustomer(2L).isPresent());
+    }
+
+    @Test
+    public void testBulkLookupLoadsOnlyMisses() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer(1L, "Acme")));
+        cache.getCustomer(1L);
+        when(customerRepository.findAllById(any())).thenReturn(List.of(customer(3L, "Globex")));
+
+        Map<Long, Customer> customers = cache.getCustomers(Set.of(1L, 3L, 4L));
+
+        assertEquals(Set.of(1L, 3L), customers.keySet());
+        verify(customerRepository).findAllById(argThat(ids -> Set.copyOf((Collection<Long>) ids).equals(Set.of(3L, 4L))));
+    }
+
+    @Test
+    public void testCustomerWriteEvictsCustomerAndPresets() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer(1L, "Acme")));
+        RouterPreset preset = new RouterPreset();
+        preset.setRouterPresetID(5L);
+        when(routerPresetRepository.findById(5L)).thenReturn(Optional.of(preset));
+        cache.getCustomer(1L);
+        cache.getPreset(5L);
+
+        Customer renamed = customer(1L, "Acme Ltd");
+        when(customerRepository.save(renamed)).thenReturn(renamed);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(renamed));
+        new CustomerService(customerRepository, cache).saveCustomer(renamed);
+
+        assertEquals("Acme Ltd", cache.getCustomer(1L).orElseThrow().getCustomerName());
+        cache.getPreset(5L);
+        verify(routerPresetRepository, times(2)).findById(5L);
+    }
+
+    private static Customer customer(Long id, String name) {
+        return new Customer(id, name);
+    }
+}
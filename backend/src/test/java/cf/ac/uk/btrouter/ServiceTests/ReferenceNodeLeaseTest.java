@@ -0,0 +1,119 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.repository.ReferenceNodeRepository;
+import cf.ac.uk.btrouter.service.ReferenceNodeLease;
+import cf.ac.uk.btrouter.service.TimeBasedReferenceNumberGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Each lease stands for one running instance; leases commit for real, as instances would
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReferenceNodeLeaseTest {
+
+    private static final long LEASE_MS = 300_000;
+
+    @Autowired
+    private ReferenceNodeRepository referenceNodeRepository;
+
+    @AfterEach
+    public void cleanup() {
+        referenceNodeRepository.deleteAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConfiguredNodeIdIsUsedWithoutLease() {
+        ObjectProvider<ReferenceNodeLease> provider = mock(ObjectProvider.class);
+
+        TimeBasedReferenceNumberGenerator generator = new TimeBasedReferenceNumberGenerator(5, provider);
+
+        assertEquals(5, nodeOf(generator.nextId()));
+        verifyNoInteractions(provider);
+    }
+
+    @Test
+    public void testStartupFailsWithoutNodeIdOrLease() {
+        assertThrows(IllegalStateException.class, () -> new TimeBasedReferenceNumberGenerator(-1, provider(null)));
+    }
+
+    @Test
+    public void testInstancesLeaseDistinctNodeIds() {
+        ReferenceNodeLease first = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+        ReferenceNodeLease second = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+
+        TimeBasedReferenceNumberGenerator a = new TimeBasedReferenceNumberGenerator(-1, provider(first));
+        TimeBasedReferenceNumberGenerator b = new TimeBasedReferenceNumberGenerator(-1, provider(second));
+
+        assertNotEquals(first.nodeId(), second.nodeId());
+        assertEquals(first.nodeId(), nodeOf(a.nextId()));
+        assertEquals(second.nodeId(), nodeOf(b.nextId()));
+    }
+
+    @Test
+    public void testReleasedNodeIdIsReused() {
+        ReferenceNodeLease first = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+        int nodeId = first.acquire();
+        first.release();
+
+        ReferenceNodeLease restarted = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+
+        assertEquals(nodeId, restarted.acquire());
+        assertEquals(1, referenceNodeRepository.count());
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOverAndFormerHolderMovesOn() {
+        ReferenceNodeLease stalled = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+        int nodeId = stalled.acquire();
+        // The holder stopped renewing long enough for its lease to run out
+        referenceNodeRepository.renew(nodeId, ownerOf(nodeId), LocalDateTime.now().minusSeconds(1));
+
+        ReferenceNodeLease successor = new ReferenceNodeLease(referenceNodeRepository, LEASE_MS);
+        assertEquals(nodeId, successor.acquire());
+
+        stalled.renew();
+        assertNotEquals(nodeId, stalled.nodeId());
+    }
+
+    @Test
+    public void testNoIdsIssuedOnceLeaseLapses() throws Exception {
+        ReferenceNodeLease lease = new ReferenceNodeLease(referenceNodeRepository, 200);
+        TimeBasedReferenceNumberGenerator generator = new TimeBasedReferenceNumberGenerator(-1, provider(lease));
+        generator.nextId();
+
+        // Not renewed within half the lease
+        Thread.sleep(150);
+
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<ReferenceNodeLease> provider(ReferenceNodeLease lease) {
+        ObjectProvider<ReferenceNodeLease> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(lease);
+        return provider;
+    }
+
+    private String ownerOf(int nodeId) {
+        return referenceNodeRepository.findById(nodeId).orElseThrow().getOwner();
+    }
+
+    private static long nodeOf(long id) {
+        return (id >>> 12) & 1023;
+    }
+}
@@ -0,0 +1,83 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.service.TimeBasedReferenceNumberGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceNumberGeneratorTest {
+
+    @Test
+    public void testReferenceFormat() {
+        String reference = new TimeBasedReferenceNumberGenerator(7).next();
+
+        assertTrue(reference.matches("BT-[0-9A-HJKMNP-TV-Z]{13}"), reference);
+        assertTrue(reference.length() <= 20, "must fit order_tracking.reference_number");
+    }
+
+    @Test
+    public void testEncodingIsFixedWidthAndOrdered() {
+        assertEquals("BT-0000000000000", TimeBasedReferenceNumberGenerator.encode(0));
+        assertEquals("BT-7ZZZZZZZZZZZZ", TimeBasedReferenceNumberGenerator.encode(Long.MAX_VALUE));
+
+        TimeBasedReferenceNumberGenerator generator = new TimeBasedReferenceNumberGenerator(1);
+        String first = generator.next();
+        String second = generator.next();
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    public void testNodesNeverCollide() {
+        TimeBasedReferenceNumberGenerator a = new TimeBasedReferenceNumberGenerator(1);
+        TimeBasedReferenceNumberGenerator b = new TimeBasedReferenceNumberGenerator(2);
+
+        for (int i = 0; i < 100_000; i++) {
+            assertNotEquals(a.nextId(), b.nextId());
+        }
+    }
+
+    @Test
+    public void testRejectsOutOfRangeNode() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeBasedReferenceNumberGenerator(1024));
+    }
+
+    @Test
+    public void testTenMillionConcurrentIdsAreUnique() throws Exception {
+        int threads = 8;
+        int perThread = 1_250_000;
+        TimeBasedReferenceNumberGenerator generator = new TimeBasedReferenceNumberGenerator(3);
+        long[] ids = new long[threads * perThread];
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ids[offset + i] = generator.nextId();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Encoding is a fixed-width bijection, so unique ids mean unique references
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++) {
+            assertNotEquals(ids[i - 1], ids[i], "duplicate id at " + i);
+        }
+        assertTrue(ids[0] > 0);
+    }
+}
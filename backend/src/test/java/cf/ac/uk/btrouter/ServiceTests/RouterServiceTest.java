@@ -2,6 +2,7 @@ package cf.ac.uk.btrouter.ServiceTests;
 
 import cf.ac.uk.btrouter.model.Router;
 import cf.ac.uk.btrouter.repository.RouterRepository;
+import cf.ac.uk.btrouter.service.ReferenceDataCache;
 import cf.ac.uk.btrouter.service.RouterService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +22,9 @@ class RouterServiceTest {
     @Mock
     private RouterRepository routerRepository;
 
+    @Mock
+    private ReferenceDataCache referenceDataCache;
+
     @InjectMocks
     private RouterService routerService;
 
@@ -67,5 +71,6 @@ class RouterServiceTest {
     void deleteRouter_ValidId_DeletesSuccessfully() {
         routerService.deleteRouter(1L);
         verify(routerRepository, times(1)).deleteById(1L);
+        verify(referenceDataCache).evictRouter(1L);
     }
 }
\ No newline at end of file
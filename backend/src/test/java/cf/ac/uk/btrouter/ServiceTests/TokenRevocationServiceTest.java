@@ -0,0 +1,108 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.model.TokenRevocation;
+import cf.ac.uk.btrouter.repository.TokenRevocationRepository;
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Revocations must outlive the node that wrote them, so these tests commit for real
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TokenRevocationServiceTest {
+
+    private static final long JWT_EXPIRATION = 60_000L;
+
+    @Autowired
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        tokenRevocationRepository.deleteAll();
+    }
+
+    @Test
+    public void testRevocationIsSeenByAnotherNode() {
+        TokenRevocationService thisNode = service();
+        TokenRevocationService otherNode = service();
+        long issued = thisNode.currentEpoch("user@bt.com");
+        assertFalse(otherNode.isRevoked("user@bt.com", issued));
+
+        thisNode.revokeTokensFor("User@BT.com");
+
+        assertTrue(thisNode.isRevoked("user@bt.com", issued));
+        // A node started after the revocation reads it from the table
+        assertTrue(service().isRevoked("user@bt.com", issued));
+        assertFalse(service().isRevoked("user@bt.com", otherNode.currentEpoch("user@bt.com")));
+    }
+
+    @Test
+    public void testTokenIssuedJustBeforeRevocationIsRejected() {
+        TokenRevocationService service = service();
+        service.revokeTokensFor("user@bt.com");
+
+        // Issued and revoked back to back, well within one second (and possibly one millisecond)
+        long stolen = service.currentEpoch("user@bt.com");
+        service.revokeTokensFor("user@bt.com");
+        service.revokeTokensFor("user@bt.com");
+        long reissued = service.currentEpoch("user@bt.com");
+
+        assertTrue(service.isRevoked("user@bt.com", stolen));
+        assertTrue(reissued > stolen);
+        assertFalse(service.isRevoked("user@bt.com", reissued));
+        // Tokens without a stamp predate epochs, so any revocation rejects them
+        assertTrue(service.isRevoked("user@bt.com", null));
+    }
+
+    @Test
+    public void testRevocationRollsBackWithTheChange() {
+        TokenRevocationService service = service();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            service.revokeTokensFor("user@bt.com");
+            status.setRollbackOnly();
+        });
+
+        assertTrue(tokenRevocationRepository.findById("user@bt.com").isEmpty());
+        assertFalse(service.isRevoked("user@bt.com", 0L));
+    }
+
+    @Test
+    public void testExpiredRevocationsArePurged() {
+        long now = System.currentTimeMillis();
+        tokenRevocationRepository.save(new TokenRevocation("old@bt.com", now - JWT_EXPIRATION - 1_000));
+        tokenRevocationRepository.save(new TokenRevocation("new@bt.com", now));
+
+        service().purgeExpired();
+
+        assertTrue(tokenRevocationRepository.findById("old@bt.com").isEmpty());
+        assertTrue(tokenRevocationRepository.findById("new@bt.com").isPresent());
+    }
+
+    private TokenRevocationService service() {
+        return new TokenRevocationService(tokenRevocationRepository, JWT_EXPIRATION, 60_000L, 100L);
+    }
+}
@@ -0,0 +1,145 @@
+package cf.ac.uk.btrouter.ServiceTests;
+
+import cf.ac.uk.btrouter.model.User;
+import cf.ac.uk.btrouter.repository.UserRepository;
+import cf.ac.uk.btrouter.service.EmailService;
+import cf.ac.uk.btrouter.service.EphemeralSecretStore;
+import cf.ac.uk.btrouter.service.InMemoryEphemeralSecretStore;
+import cf.ac.uk.btrouter.service.TokenRevocationService;
+import cf.ac.uk.btrouter.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceSecretsTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    private EphemeralSecretStore secretStore;
+    private UserService userService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        secretStore = new InMemoryEphemeralSecretStore();
+        userService = new UserService(userRepository, passwordEncoder, emailService,
+                tokenRevocationService, secretStore);
+
+        user = new User();
+        user.setEmail("user@bt.com");
+    }
+
+    @Test
+    void twoFACode_RoundTrip_DoesNotWriteUserRow() {
+        userService.generateAndSendTwoFACode(user);
+
+        ArgumentCaptor<String> code = ArgumentCaptor.forClass(String.class);
+        verify(emailService).sendTwoFactorCode(eq("user@bt.com"), code.capture());
+
+        assertTrue(userService.validateTwoFACode("User@BT.com", code.getValue()));
+        assertFalse(userService.validateTwoFACode("user@bt.com", "not-the-code"));
+
+        userService.clearTwoFACode(user);
+        assertFalse(userService.validateTwoFACode("user@bt.com", code.getValue()));
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void resetToken_StoredHashedAndSingleUse() {
+        when(userRepository.findByEmail("user@bt.com")).thenReturn(Optional.of(user));
+        when(passwordEncoder.encode("NewPassword1")).thenReturn("encoded");
+
+        userService.createPasswordResetTokenForUser("user@bt.com");
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(emailService).sendPasswordResetEmail(eq("user@bt.com"), token.capture());
+
+        // Only the hash of the token is held
+        assertTrue(secretStore.get("reset:" + token.getValue()).isEmpty());
+        assertEquals("valid", userService.validatePasswordResetToken(token.getValue()));
+
+        userService.resetPassword(token.getValue(), "NewPassword1");
+        assertEquals("encoded", user.getPassword());
+        assertEquals("invalid", userService.validatePasswordResetToken(token.getValue()));
+        assertThrows(RuntimeException.class, () -> userService.resetPassword(token.getValue(), "Another1"));
+    }
+
+    @Test
+    void changePassword_RevokesOutstandingTokens() {
+        user.setPassword("encoded-old");
+        when(userRepository.findByEmail("user@bt.com")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("OldPassword1", "encoded-old")).thenReturn(true);
+        when(passwordEncoder.encode("NewPassword1")).thenReturn("encoded-new");
+
+        userService.changePassword("user@bt.com", "OldPassword1", "NewPassword1", "NewPassword1");
+
+        assertEquals("encoded-new", user.getPassword());
+        verify(tokenRevocationService).revokeTokensFor("user@bt.com");
+    }
+
+    @Test
+    void adminPasswordUpdate_EncodesAndRevokesOutstandingTokens() {
+        user.setPassword("encoded-old");
+        user.setRole(User.Role.USER);
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+        when(passwordEncoder.encode("NewPassword1")).thenReturn("encoded-new");
+
+        User update = new User();
+        update.setEmail("user@bt.com");
+        update.setRole(User.Role.USER);
+        update.setPassword("NewPassword1");
+        userService.updateUser(7, update);
+
+        assertEquals("encoded-new", user.getPassword());
+        verify(tokenRevocationService).revokeTokensFor("user@bt.com");
+    }
+
+    @Test
+    void resetToken_NewRequestInvalidatesPrevious() {
+        when(userRepository.findByEmail("user@bt.com")).thenReturn(Optional.of(user));
+
+        userService.createPasswordResetTokenForUser("user@bt.com");
+        userService.createPasswordResetTokenForUser("user@bt.com");
+        ArgumentCaptor<String> tokens = ArgumentCaptor.forClass(String.class);
+        verify(emailService, times(2)).sendPasswordResetEmail(eq("user@bt.com"), tokens.capture());
+
+        assertEquals("invalid", userService.validatePasswordResetToken(tokens.getAllValues().get(0)));
+        assertEquals("valid", userService.validatePasswordResetToken(tokens.getAllValues().get(1)));
+    }
+
+    @Test
+    void expiredSecrets_AreNotReturnedAndGetSwept() throws Exception {
+        secretStore.put("short", "value", Duration.ofMillis(1));
+        secretStore.put("long", "value", Duration.ofMinutes(5));
+        Thread.sleep(5);
+
+        assertTrue(secretStore.get("short").isEmpty());
+        secretStore.put("short", "value", Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        assertEquals(1, secretStore.purgeExpired());
+        assertEquals(Optional.of("value"), secretStore.get("long"));
+    }
+}
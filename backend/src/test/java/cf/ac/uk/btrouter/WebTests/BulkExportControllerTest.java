@@ -0,0 +1,84 @@
+package cf.ac.uk.btrouter.WebTests;
+
+import cf.ac.uk.btrouter.controller.SpreadsheetController;
+import cf.ac.uk.btrouter.service.BulkOrderExportService;
+import cf.ac.uk.btrouter.service.ExportJobService;
+import cf.ac.uk.btrouter.service.SpreadsheetGenerationService;
+import cf.ac.uk.btrouter.service.SpreadsheetSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class BulkExportControllerTest {
+
+    private static final String CSV = "id,reference_number\r\n1,BT-REF1\r\n";
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        BulkOrderExportService bulkOrderExportService = mock(BulkOrderExportService.class);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(CSV.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bulkOrderExportService).writeCsv(any());
+
+        SpreadsheetController controller = new SpreadsheetController(mock(SpreadsheetGenerationService.class),
+                mock(ExportJobService.class), mock(SpreadsheetSnapshotService.class), bulkOrderExportService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testCsvIsPlainWithoutAcceptEncoding() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/spreadsheet/orders.csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string(CSV));
+    }
+
+    @Test
+    public void testCsvIsGzippedWhenAccepted() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/spreadsheet/orders.csv").header("Accept-Encoding", "br, gzip;q=0.8"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(CSV, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testGzipRefusedWithZeroQuality() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/spreadsheet/orders.csv").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(CSV));
+    }
+}
@@ -0,0 +1,92 @@
+package cf.ac.uk.btrouter.WebTests;
+
+import cf.ac.uk.btrouter.controller.OrderController;
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
+import cf.ac.uk.btrouter.dto.OrderCursor;
+import cf.ac.uk.btrouter.dto.OrderFilter;
+import cf.ac.uk.btrouter.repository.OrderRepository;
+import cf.ac.uk.btrouter.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class OrderControllerPageTest {
+
+    private MockMvc mockMvc;
+    private OrderRepository orderRepository;
+
+    @BeforeEach
+    public void setup() {
+        orderRepository = mock(OrderRepository.class);
+        OrderController controller = new OrderController();
+        ReflectionTestUtils.setField(controller, "orderService", new OrderService(orderRepository));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testFirstPageReturnsCursorWhenMoreRowsExist() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 12, 0);
+        when(orderRepository.findPage(any(), isNull(), eq(false), eq(3)))
+                .thenReturn(List.of(order(30L, now), order(20L, now.minusHours(1)), order(10L, now.minusHours(2))));
+
+        mockMvc.perform(get("/api/orders/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(20))
+                .andExpect(jsonPath("$.items[1].trackingReference").value("N/A"))
+                .andExpect(jsonPath("$.nextCursor").value(new OrderCursor(now.minusHours(1), 20L).encode()));
+    }
+
+    @Test
+    public void testCursorAndFiltersArePassedToRepository() throws Exception {
+        OrderCursor cursor = new OrderCursor(LocalDateTime.of(2025, 3, 1, 12, 0), 20L);
+        when(orderRepository.findPage(any(), any(), anyBoolean(), anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/orders/page")
+                        .param("status", "Pending")
+                        .param("priority", "High")
+                        .param("customerId", "7")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-31")
+                        .param("sort", "asc")
+                        .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        ArgumentCaptor<OrderFilter> filter = ArgumentCaptor.forClass(OrderFilter.class);
+        verify(orderRepository).findPage(filter.capture(), eq(cursor), eq(true), eq(51));
+        assertEquals("Pending", filter.getValue().getStatus());
+        assertEquals("High", filter.getValue().getPriorityLevel());
+        assertEquals(7L, filter.getValue().getCustomerId());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 0, 0), filter.getValue().getFrom());
+        assertEquals(LocalDateTime.of(2025, 2, 1, 0, 0), filter.getValue().getTo());
+    }
+
+    @Test
+    public void testInvalidRequestsAreRejected() throws Exception {
+        mockMvc.perform(get("/api/orders/page").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders/page").param("size", "5000"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders/page").param("sort", "sideways"))
+                .andExpect(status().isBadRequest());
+        verify(orderRepository, never()).findPage(any(), any(), anyBoolean(), anyInt());
+    }
+
+    private AdminOrderDTO order(Long id, LocalDateTime orderDate) {
+        return new AdminOrderDTO(id, "BT-" + id, "user@bt.com", orderDate, "High", "Pending", "N/A");
+    }
+}
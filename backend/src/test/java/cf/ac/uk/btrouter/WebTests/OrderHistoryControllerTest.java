@@ -1,6 +1,7 @@
 package cf.ac.uk.btrouter.WebTests;
 
 import cf.ac.uk.btrouter.controller.OrderHistoryController;
+import cf.ac.uk.btrouter.dto.OrderSummaryDTO;
 import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.model.OrderTracking;
 import cf.ac.uk.btrouter.model.Router;
@@ -44,24 +45,20 @@ public class OrderHistoryControllerTest {
     public void testGetOrderHistory() throws Exception {
         String userEmail = "test@example.com";
 
-        Router router = new Router();
-        router.setRouterName("Test Router");
+        OrderSummaryDTO order = new OrderSummaryDTO(1L, "BT-REF1", "Cardiff Office", userEmail, "High",
+                "Pending", LocalDateTime.now(), 1, "Test Customer", "Test Router");
 
-        Order order = new Order();
-        order.setRouterOrderID(1L);
-        order.setEmail(userEmail);
-        order.setOrderDate(LocalDateTime.now());
-        order.setNumberOfRouters(1);
-        order.setRouter(router);
-
-        when(orderService.getOrdersByEmail(userEmail)).thenReturn(List.of(order));
+        when(orderService.getOrderSummariesByEmail(userEmail)).thenReturn(List.of(order));
 
         Authentication mockAuth = mock(Authentication.class);
         when(mockAuth.getName()).thenReturn(userEmail);
 
         mockMvc.perform(get("/api/orders/history")
                         .principal(mockAuth))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].routerOrderID").value(1))
+                .andExpect(jsonPath("$[0].customer.customerName").value("Test Customer"))
+                .andExpect(jsonPath("$[0].router.routerName").value("Test Router"));
     }
 
     @Test
@@ -1,5 +1,6 @@
 package cf.ac.uk.btrouter.WebTests;
 
+import cf.ac.uk.btrouter.dto.AdminOrderDTO;
 import cf.ac.uk.btrouter.model.Order;
 import cf.ac.uk.btrouter.repository.OrderRepository;
 import cf.ac.uk.btrouter.service.OrderService;
@@ -60,10 +61,10 @@ class OrderHistoryServiceTest {
 
     @Test
     void testFindByStatus() {
-        when(orderRepository.findByStatus("Pending"))
-                .thenReturn(List.of(mockOrder));
+        when(orderRepository.findAdminOrdersByStatus("Pending"))
+                .thenReturn(List.of(new AdminOrderDTO(1L, "REF123", "test@example.com", null, "High", "Pending", "N/A")));
 
-        List<Order> result = orderService.getPendingRequests();
+        List<AdminOrderDTO> result = orderService.getPendingRequests();
         assertThat(result).isNotEmpty();
         assertEquals("Pending", result.get(0).getStatus());
     }
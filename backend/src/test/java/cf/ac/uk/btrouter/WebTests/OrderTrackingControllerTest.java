@@ -0,0 +1,73 @@
+package cf.ac.uk.btrouter.WebTests;
+
+import cf.ac.uk.btrouter.controller.OrderTrackingController;
+import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class OrderTrackingControllerTest {
+
+    private static final String ETAG = "\"3f2a9c\"";
+
+    private MockMvc mockMvc;
+    private OrderTrackingService orderTrackingService;
+
+    @BeforeEach
+    public void setup() {
+        orderTrackingService = mock(OrderTrackingService.class);
+        OrderTrackingController controller = new OrderTrackingController();
+        ReflectionTestUtils.setField(controller, "orderTrackingService", orderTrackingService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        OrderTrackingDTO view = OrderTrackingDTO.builder()
+                .referenceNumber("BT-REF1")
+                .status("PENDING")
+                .routerName("Test Router")
+                .build();
+        when(orderTrackingService.getTrackingSnapshot("BT-REF1"))
+                .thenReturn(Optional.of(new OrderTrackingService.TrackingSnapshot(view, ETAG)));
+        when(orderTrackingService.getTrackingSnapshot("BT-MISSING")).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testFirstPollReturnsViewAndEtag() throws Exception {
+        mockMvc.perform(get("/api/order-tracking/BT-REF1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", ETAG))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.routerName").value("Test Router"));
+    }
+
+    @Test
+    public void testRepeatPollWithMatchingEtagIsNotModified() throws Exception {
+        mockMvc.perform(get("/api/order-tracking/BT-REF1").header("If-None-Match", "W/\"old\", " + ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", ETAG))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testStaleEtagReturnsView() throws Exception {
+        mockMvc.perform(get("/api/order-tracking/BT-REF1").header("If-None-Match", "\"old\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.referenceNumber").value("BT-REF1"));
+    }
+
+    @Test
+    public void testUnknownReferenceIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/order-tracking/BT-MISSING"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Error: Order not found with reference: BT-MISSING"));
+    }
+}
@@ -0,0 +1,174 @@
+package cf.ac.uk.btrouter.WebTests;
+
+import cf.ac.uk.btrouter.controller.OrderTrackingController;
+import cf.ac.uk.btrouter.dto.OrderTrackingDTO;
+import cf.ac.uk.btrouter.service.OrderTrackingService;
+import cf.ac.uk.btrouter.service.TrackingUpdateBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class OrderTrackingStreamTest {
+
+    private MockMvc mockMvc;
+    private OrderTrackingService orderTrackingService;
+    private TrackingUpdateBroadcaster broadcaster;
+
+    private final OrderTrackingService.TrackingSnapshot pending = snapshot("PENDING", "\"v1\"");
+    private final OrderTrackingService.TrackingSnapshot confirmed = snapshot("CONFIRMED", "\"v2\"");
+
+    @BeforeEach
+    public void setup() {
+        orderTrackingService = mock(OrderTrackingService.class);
+        broadcaster = new TrackingUpdateBroadcaster(new SimpleMeterRegistry(), 100, 2, 60_000, 5_000, 1, 100, 10_000);
+        OrderTrackingController controller = new OrderTrackingController();
+        ReflectionTestUtils.setField(controller, "orderTrackingService", orderTrackingService);
+        ReflectionTestUtils.setField(controller, "trackingUpdateBroadcaster", broadcaster);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        when(orderTrackingService.getTrackingSnapshot("BT-REF1")).thenReturn(Optional.of(pending));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void testStreamSendsCurrentViewThenCommittedChanges() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/order-tracking/BT-REF1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(awaitContent(result, "\"status\":\"PENDING\""));
+        assertTrue(result.getResponse().getContentAsString().contains("id:\"v1\""));
+
+        broadcaster.publish("bt-ref1", () -> Optional.of(confirmed));
+
+        assertTrue(awaitContent(result, "\"status\":\"CONFIRMED\""));
+        assertTrue(result.getResponse().getContentAsString().contains("id:\"v2\""));
+    }
+
+    @Test
+    public void testChangeCommittedWhileSubscribingIsDelivered() throws Exception {
+        // The change lands after the stream is registered but before the first view is read
+        when(orderTrackingService.getTrackingSnapshot("BT-REF1")).thenAnswer(invocation -> {
+            broadcaster.publish("BT-REF1", () -> Optional.of(confirmed));
+            return Optional.of(pending);
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/order-tracking/BT-REF1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertTrue(awaitContent(result, "\"status\":\"CONFIRMED\""));
+    }
+
+    @Test
+    public void testUnknownReferenceReleasesStream() throws Exception {
+        when(orderTrackingService.getTrackingSnapshot("BT-NONE")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/order-tracking/BT-NONE/stream"))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, broadcaster.openStreams());
+    }
+
+    @Test
+    public void testReconnectWithCurrentEventIdSendsNothing() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/order-tracking/BT-REF1/stream").header("Last-Event-ID", "\"v1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals("", result.getResponse().getContentAsString());
+
+        broadcaster.heartbeat();
+        assertTrue(awaitContent(result, ":heartbeat"));
+    }
+
+    @Test
+    public void testStreamsArePerClientCapped() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/order-tracking/BT-REF1/stream").with(remoteAddr("10.0.0.1")))
+                    .andExpect(request().asyncStarted());
+        }
+
+        mockMvc.perform(get("/api/order-tracking/BT-REF1/stream").with(remoteAddr("10.0.0.1")))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/api/order-tracking/BT-REF1/stream").with(remoteAddr("10.0.0.2")))
+                .andExpect(request().asyncStarted());
+        assertEquals(3, broadcaster.openStreams());
+    }
+
+    @Test
+    public void testUpdateDroppedWhenQueueFullClosesStream() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        broadcaster.shutdown();
+        broadcaster = new TrackingUpdateBroadcaster(meterRegistry, 100, 2, 60_000, 5_000, 1, 1, 10_000);
+        assertTrue(broadcaster.subscribe("BT-REF1", "10.0.0.1", "\"v1\"", () -> Optional.of(pending)).isPresent());
+
+        // One send thread held by a slow load and a queue of one: the third change has nowhere to go
+        CountDownLatch release = new CountDownLatch(1);
+        broadcaster.publish("BT-REF1", () -> {
+            awaitQuietly(release);
+            return Optional.of(confirmed);
+        });
+        broadcaster.publish("BT-REF1", () -> Optional.of(confirmed));
+        broadcaster.publish("BT-REF1", () -> Optional.of(confirmed));
+        release.countDown();
+
+        assertEquals(1.0, meterRegistry.get("tracking.stream.dropped").counter().count());
+        // Closed rather than left on an old view; the client reconnects with Last-Event-ID
+        assertEquals(0, broadcaster.openStreams());
+    }
+
+    @Test
+    public void testNoLoadWithoutSubscribers() {
+        broadcaster.publish("BT-REF1", () -> fail("view loaded with nobody listening"));
+    }
+
+    private static org.springframework.test.web.servlet.request.RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (result.getResponse().getContentAsString().contains(expected)) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private static OrderTrackingService.TrackingSnapshot snapshot(String status, String etag) {
+        OrderTrackingDTO view = OrderTrackingDTO.builder()
+                .referenceNumber("BT-REF1")
+                .status(status)
+                .build();
+        return new OrderTrackingService.TrackingSnapshot(view, etag);
+    }
+}